@@ -0,0 +1,76 @@
+package com.webserver.benchmarks;
+
+import com.webserver.model.User;
+import com.webserver.utils.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Serializing users the way the user API does, as one string or streamed. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({"1", "100", "10000"})
+    public int users;
+
+    private User user;
+    private List<User> userList;
+
+    @Setup
+    public void setup() {
+        user = new User(1L, "Ada Lovelace", "ada@example.com", 36);
+        userList = new ArrayList<>(users);
+        for (long id = 1; id <= users; id++) {
+            userList.add(new User(id, "User " + id, "user" + id + "@example.com", 20 + (int) (id % 50)));
+        }
+    }
+
+    @Benchmark
+    public String createSuccessJsonSingle() {
+        return JsonUtils.createSuccessJson("User found", user);
+    }
+
+    @Benchmark
+    public String createSuccessJsonList() {
+        return JsonUtils.createSuccessJson("Users retrieved successfully", userList);
+    }
+
+    @Benchmark
+    public long writeSuccessJsonList() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        JsonUtils.writeSuccessJson(out, "Users retrieved successfully", userList);
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.webserver.benchmarks;
+
+import com.webserver.HttpParseException;
+import com.webserver.HttpRequestParser;
+import com.webserver.Request;
+import com.webserver.RequestProcessor;
+import com.webserver.Response;
+import com.webserver.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Routing, handling, response post-processing and body production for a parsed request, without sockets. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dserver.logging.sample-rate.info=0", "-Dserver.logging.sample-rate.debug=0"})
+public class RequestProcessorBenchmark {
+    // Accepts and drops everything, so bodies produced while sending (the /api/users stream)
+    // are serialized inside the measurement
+    private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Param({"/health", "/api/users/2", "/api/users", "/missing"})
+    public String path;
+
+    private RequestProcessor processor;
+    private byte[] requestBytes;
+
+    @Setup
+    public void setup() {
+        processor = new RequestProcessor(50);
+        requestBytes = ("GET " + path + " HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Accept: application/json\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final HttpRequestParser parser = new HttpRequestParser();
+    }
+
+    @Benchmark
+    public Response processRequest(ThreadState state) throws HttpParseException, IOException {
+        // A Request is mutated by routing, so each invocation parses a fresh one
+        Request request = state.parser.parse(ByteBuffer.wrap(requestBytes));
+        Response response = processor.processRequest(request);
+        ResponseBody body = response.getResponseBody();
+        if (body != null) {
+            while (!body.writeTo(DISCARD)) {
+                // A blocking channel takes everything; loop only for bodies written in slices
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,59 @@
+package com.webserver.benchmarks;
+
+import com.webserver.Response;
+import com.webserver.utils.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Building a typical JSON response and encoding it for the socket. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+    private static final byte[] CORS_HEADERS = Response.encodeHeaders(
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+
+    private String json;
+    private ByteBuffer scratch;
+
+    @Setup
+    public void setup() {
+        json = JsonUtils.createSuccessJson("User found",
+                Map.of("id", 42, "name", "Ada Lovelace", "email", "ada@example.com", "age", 36));
+        scratch = ByteBuffer.allocate(8192);
+    }
+
+    private Response response() {
+        Response response = new Response(200, json);
+        response.addHeader("Content-Type", "application/json; charset=UTF-8");
+        response.addEncodedHeaders(CORS_HEADERS);
+        response.setKeepAlive(true, 5);
+        return response;
+    }
+
+    @Benchmark
+    public String toHttpString() {
+        return response().toHttpString();
+    }
+
+    @Benchmark
+    public ByteBuffer[] toByteBuffers() {
+        return response().toByteBuffers(scratch);
+    }
+}
@@ -0,0 +1,81 @@
+package com.webserver.benchmarks;
+
+import com.webserver.model.User;
+import com.webserver.storage.UserStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User storage reads and writes under contention. The subclasses run the same
+ * benchmarks at 1, 4 and 16 threads; {@link UserStorageReadMostlyBenchmark} mixes
+ * readers and writers. Request logging is sampled out so the numbers measure the
+ * storage itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dserver.logging.sample-rate.info=0", "-Dserver.logging.sample-rate.debug=0"})
+public abstract class UserStorageBenchmark {
+    static final int USERS = 10_000;
+
+    private UserStorage storage;
+
+    @Setup
+    public void setup() {
+        storage = populatedStorage();
+    }
+
+    static UserStorage populatedStorage() {
+        UserStorage storage = new UserStorage();
+        for (int i = storage.getUserCount(); i < USERS; i++) {
+            storage.createUser(new User(null, "User " + i, "user" + i + "@example.com", 20 + i % 50));
+        }
+        return storage;
+    }
+
+    static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, USERS + 1);
+    }
+
+    static User update(UserStorage storage) {
+        long id = randomId();
+        return storage.updateUser(id, new User(id, "Updated " + id, "updated" + id + "@example.com", 30));
+    }
+
+    @Benchmark
+    public Optional<User> getUserById() {
+        return storage.getUserById(randomId());
+    }
+
+    @Benchmark
+    public User updateUser() {
+        return update(storage);
+    }
+
+    @Threads(1)
+    public static class OneThread extends UserStorageBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends UserStorageBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends UserStorageBenchmark {
+    }
+}
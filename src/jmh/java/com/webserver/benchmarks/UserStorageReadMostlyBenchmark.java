@@ -0,0 +1,49 @@
+package com.webserver.benchmarks;
+
+import com.webserver.model.User;
+import com.webserver.storage.UserStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/** Three readers per writer on one storage; scale the group with {@code -tg 6,2} and so on. */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dserver.logging.sample-rate.info=0", "-Dserver.logging.sample-rate.debug=0"})
+public class UserStorageReadMostlyBenchmark {
+    private UserStorage storage;
+
+    @Setup
+    public void setup() {
+        storage = UserStorageBenchmark.populatedStorage();
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public Optional<User> read() {
+        return storage.getUserById(UserStorageBenchmark.randomId());
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public User write() {
+        return UserStorageBenchmark.update(storage);
+    }
+}
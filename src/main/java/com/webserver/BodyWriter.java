@@ -0,0 +1,10 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@FunctionalInterface
+public interface BodyWriter {
+    /** Writes the body; bytes are sent to the client as they are produced, not after return. */
+    void writeTo(OutputStream out) throws IOException;
+}
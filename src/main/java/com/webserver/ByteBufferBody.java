@@ -0,0 +1,30 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+public class ByteBufferBody implements ResponseBody {
+    private final ByteBuffer buffer;
+    private final long length;
+
+    public ByteBufferBody(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.length = buffer.remaining();
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
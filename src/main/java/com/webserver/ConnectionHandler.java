@@ -2,102 +2,327 @@ package com.webserver;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.capture.TrafficCapture;
+import com.webserver.metrics.CloseReason;
 import com.webserver.metrics.MetricsCollector;
+import com.webserver.metrics.RequestTiming;
+import com.webserver.timeout.ConnectionDeadline;
+import com.webserver.timeout.HashedTimerWheel;
+import com.webserver.timeout.TimeoutPhase;
 
 public class ConnectionHandler implements Runnable {
+    private static final StructuredLogger logger = new StructuredLogger(ConnectionHandler.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
     private final Socket clientSocket;
     private final RequestProcessor requestProcessor;
+    private final ThreadPoolManager threadPool;
+    private final byte[] overloadResponse;
     private final long connectionId;
+    private final long acceptedAt;
+    private final String remoteAddress;
+    private final int maxRequests;
+    private final int idleTimeoutMs;
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).limit(0);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private final ConnectionDeadline deadline;
+    private volatile TimeoutPhase timedOut;
+    // Only touched by the thread currently serving the connection
+    private InputStream input;
+    private OutputStream output;
+    private int requestsServed = 0;
+    // Time the connection waited for a worker, charged to its first request
+    private long queueWait;
+    private CloseReason closeReason = CloseReason.SERVER;
 
-    public ConnectionHandler(Socket clientSocket, RequestProcessor requestProcessor, long connectionId) {
+    public ConnectionHandler(Socket clientSocket, RequestProcessor requestProcessor, ThreadPoolManager threadPool,
+                             byte[] overloadResponse, long connectionId, long acceptedAt, HashedTimerWheel timerWheel) {
         this.clientSocket = clientSocket;
         this.requestProcessor = requestProcessor;
+        this.threadPool = threadPool;
+        this.overloadResponse = overloadResponse;
         this.connectionId = connectionId;
+        this.acceptedAt = acceptedAt;
+        this.remoteAddress = clientSocket.getInetAddress().getHostAddress();
+        this.deadline = new ConnectionDeadline(timerWheel, this::onTimeout);
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.maxRequests = config.getKeepAliveMaxRequests();
+        this.idleTimeoutMs = config.getKeepAliveIdleTimeoutMs();
     }
 
     @Override
     public void run() {
-        String threadName = Thread.currentThread().getName();
-        System.out.println("🔄 [" + threadName + "] Handling connection #" + connectionId);
+        logger.debug("Handling connection #{}", connectionId);
+        MetricsCollector.getInstance().connectionOpened();
+        queueWait = System.nanoTime() - acceptedAt;
+        serve();
+    }
 
-        try (BufferedReader input = new BufferedReader(
-                new InputStreamReader(clientSocket.getInputStream()));
-             OutputStream output = clientSocket.getOutputStream()) {
+    /**
+     * Serves requests until the connection closes, or until a handler returns a response
+     * that is not ready yet. The worker is then released and the connection resumes on a
+     * pool thread once the response completes.
+     */
+    private void serve() {
+        boolean parked = false;
+        try {
+            if (input == null) {
+                input = clientSocket.getInputStream();
+                output = clientSocket.getOutputStream();
+            }
 
-            long startTime = System.currentTimeMillis();
+            boolean keepAlive = true;
+            while (keepAlive) {
+                Request request;
+                deadline.arm(TimeoutPhase.IDLE);
+                try {
+                    request = readRequest(input);
+                } catch (HttpParseException e) {
+                    logger.warn("Bad request on connection #{}: {}", connectionId, e.getMessage());
+                    Response response = new Response(e.getStatusCode(),
+                            "<h1>" + e.getStatusCode() + " - " + e.getMessage() + "</h1>");
+                    response.setKeepAlive(false, 0);
+                    writeResponse(output, response);
+                    break;
+                }
+                if (request == null) {
+                    closeReason = CloseReason.CLIENT;
+                    break;
+                }
 
-            Request request = parseRequest(input);
-            if (request != null) {
-                System.out.println("📨 [" + threadName + "] Processing: " + request);
+                long startTime = System.nanoTime();
+                if (requestsServed == 0) {
+                    // The first request may have arrived before a worker picked the
+                    // connection up and started reading it
+                    request.setArrivedAt(Math.min(request.getArrivedAt(), acceptedAt));
+                }
+                request.setQueueWaitNanos(queueWait);
+                if (request.getTiming() != null) {
+                    request.getTiming().setQueueWait(queueWait);
+                }
+                queueWait = 0;
+                requestsServed++;
+                keepAlive = request.isKeepAlive() && requestsServed < maxRequests;
 
-                Response response = requestProcessor.processRequest(request);
+                logger.debug("Processing {}", request);
 
-                // Send HTTP response
-                output.write(response.toHttpString().getBytes());
-                if (response.getBody().length > 0) {
-                    output.write(response.getBody());
+                CompletableFuture<Response> pending = requestProcessor.processRequestAsync(request);
+                if (!pending.isDone()) {
+                    park(request, pending, keepAlive, startTime);
+                    parked = true;
+                    return;
                 }
-                output.flush();
-
-                long processingTime = System.currentTimeMillis() - startTime;
-                System.out.println("✅ [" + threadName + "] Completed connection #" +
-                        connectionId + " in " + processingTime + "ms");
-
-                // Record metrics
-                MetricsCollector.getInstance().recordHttpRequest(
-                        request.getMethod(), request.getPath(),
-                        String.valueOf(response.getStatusCode()),
-                        processingTime / 1000.0
-                );
+                keepAlive = respond(request, pending.join(), keepAlive, startTime);
             }
 
         } catch (IOException e) {
-            System.err.println("❌ [" + threadName + "] Error: " + e.getMessage());
+            logFailure(e);
         } finally {
+            if (!parked) {
+                closeConnection();
+            }
+        }
+    }
+
+    private void park(Request request, CompletableFuture<Response> pending, boolean keepAlive, long startTime) {
+        logger.debug("Connection #{} released its worker while the response is pending", connectionId);
+        pending.whenComplete((response, error) -> {
+            if (error != null) {
+                closeReason = CloseReason.ERROR;
+                closeConnection();
+                return;
+            }
             try {
-                clientSocket.close();
-                System.out.println("🔌 [" + threadName + "] Closed connection #" + connectionId);
-            } catch (IOException e) {
-                System.err.println("❌ Error closing socket: " + e.getMessage());
+                threadPool.execute(() -> resume(request, response, keepAlive, startTime), this::shed);
+            } catch (RejectedExecutionException e) {
+                // No worker to continue the connection on. The completing thread (a timer,
+                // another handler's thread) must not be held by the response, so it only
+                // writes the pre-encoded 503 the idle socket's send buffer takes at once
+                shed();
             }
+        });
+    }
+
+    private void shed() {
+        logger.warn("Shedding connection #{}: no worker to finish its response", connectionId);
+        try {
+            clientSocket.getChannel().write(ByteBuffer.wrap(overloadResponse));
+        } catch (IOException e) {
+            logger.warn("Error shedding connection #{}: {}", connectionId, e.getMessage());
         }
+        closeConnection();
     }
 
-    private Request parseRequest(BufferedReader input) throws IOException {
-        String requestLine = input.readLine();
-        if (requestLine == null || requestLine.trim().isEmpty()) {
-            return null;
+    private void resume(Request request, Response response, boolean keepAlive, long startTime) {
+        try {
+            if (respond(request, response, keepAlive, startTime)) {
+                serve();
+                return;
+            }
+        } catch (IOException e) {
+            logFailure(e);
+        }
+        closeConnection();
+    }
+
+    /** Writes the response and returns whether the connection stays open for another request. */
+    private boolean respond(Request request, Response response, boolean keepAlive, long startTime) throws IOException {
+        if (request.getMethod().equals("HEAD")) {
+            response.omitBody();
+        }
+        keepAlive = keepAlive && !response.isCloseDelimited();
+        response.setKeepAlive(keepAlive, idleTimeoutMs / 1000);
+
+        writeResponse(output, response);
+
+        long processingNanos = System.nanoTime() - startTime;
+        RequestTiming timing = request.getTiming();
+        if (timing != null) {
+            timing.responseWritten();
+            MetricsCollector.getInstance().recordRequestStages(request.getMethod(), request.getRouteTemplate(), timing);
         }
+        logger.logHttpRequest(request.getMethod(), request.getPath(), response.getStatusCode(),
+                processingNanos / 1_000_000, request.getHeader("user-agent"), remoteAddress);
 
-        String[] parts = requestLine.split(" ");
-        String method = parts.length > 0 ? parts[0] : "GET";
-        String path = parts.length > 1 ? parts[1] : "/";
+        // Record metrics
+        MetricsCollector.getInstance().recordHttpRequest(
+                request.getMethod(), request.getRouteTemplate(),
+                response.getStatusCode(),
+                processingNanos
+        );
+        TrafficCapture.record(request, response.getStatusCode(), request.getArrivedAt(),
+                System.nanoTime() - request.getArrivedAt());
+        return keepAlive;
+    }
 
-        Request request = new Request(method, path);
+    private void logFailure(IOException e) {
+        closeReason = timedOut != null ? CloseReason.SERVER : CloseReason.ERROR;
+        if (timedOut != null) {
+            logger.info("Connection #{} closed after {} timeout", connectionId, timedOut.getLabel());
+        } else {
+            logger.warn("Connection #{} failed: {}", connectionId, e.getMessage());
+        }
+    }
 
-        // Parse headers
-        String line;
-        while ((line = input.readLine()) != null && !line.trim().isEmpty()) {
-            if (line.contains(":")) {
-                int colonIndex = line.indexOf(':');
-                String headerName = line.substring(0, colonIndex).trim();
-                String headerValue = line.substring(colonIndex + 1).trim();
-                request.addHeader(headerName, headerValue);
+    private void closeConnection() {
+        deadline.disarm();
+        MetricsCollector.getInstance().connectionClosed(closeReason, System.nanoTime() - acceptedAt, requestsServed);
+        try {
+            clientSocket.close();
+            logger.debug("Closed connection #{} after {} request(s)", connectionId, requestsServed);
+        } catch (IOException e) {
+            logger.warn("Error closing socket: {}", e.getMessage());
+        }
+    }
+
+    private Request readRequest(InputStream input) throws IOException, HttpParseException {
+        while (true) {
+            if (readBuffer.hasRemaining()) {
+                Request request = parser.parse(readBuffer);
+                if (request != null) {
+                    deadline.disarm();
+                    return request;
+                }
             }
+            deadline.enter(parser.isIdle() ? TimeoutPhase.IDLE
+                    : parser.isReadingBody() ? TimeoutPhase.BODY : TimeoutPhase.HEADER);
+
+            int read = input.read(readBuffer.array(), 0, readBuffer.capacity());
+            if (read == -1) {
+                if (parser.isIdle()) {
+                    return null;
+                }
+                throw new EOFException("Connection closed in the middle of a request");
+            }
+            readBuffer.position(0).limit(read);
         }
+    }
 
-        // Read body for POST/PUT requests
-        if (("POST".equals(method) || "PUT".equals(method)) && request.getContentLength() > 0) {
-            StringBuilder bodyBuilder = new StringBuilder();
-            int contentLength = request.getContentLength();
-            for (int i = 0; i < contentLength; i++) {
-                int ch = input.read();
-                if (ch == -1) break;
-                bodyBuilder.append((char) ch);
+    private void writeResponse(OutputStream output, Response response) throws IOException {
+        ByteBuffer[] buffers = response.toByteBuffers(writeBuffer);
+        ResponseBody body = response.getResponseBody();
+        SocketChannel socketChannel = clientSocket.getChannel();
+        WritableByteChannel channel = socketChannel != null ? socketChannel : Channels.newChannel(output);
+        try {
+            deadline.arm(TimeoutPhase.WRITE);
+            if (socketChannel != null) {
+                // Head and body leave in one gathering write
+                ByteBuffer last = buffers[buffers.length - 1];
+                while (last.hasRemaining()) {
+                    socketChannel.write(buffers);
+                    deadline.arm(TimeoutPhase.WRITE);
+                }
+            } else {
+                for (ByteBuffer buffer : buffers) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+            if (body instanceof StreamingBody) {
+                // The handler writes for as long as it likes; only a stalled client times out
+                channel = new DeadlineRefreshingChannel(channel);
+            }
+            if (body != null) {
+                while (!body.writeTo(channel)) {
+                    deadline.arm(TimeoutPhase.WRITE);
+                    Thread.onSpinWait();
+                }
+            }
+        } finally {
+            deadline.disarm();
+            if (body != null) {
+                body.close();
             }
-            request.setBody(bodyBuilder.toString());
         }
+    }
+
+    // Runs on the timer wheel thread; closing the socket unblocks the worker's read or write
+    private void onTimeout(TimeoutPhase phase) {
+        if (!deadline.isExpired()) {
+            return;
+        }
+        timedOut = phase;
+        MetricsCollector.getInstance().recordConnectionTimeout(phase.getLabel());
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            logger.warn("Error closing socket: {}", e.getMessage());
+        }
+    }
+
+    private class DeadlineRefreshingChannel implements WritableByteChannel {
+        private final WritableByteChannel delegate;
 
-        return request;
+        DeadlineRefreshingChannel(WritableByteChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int written = delegate.write(source);
+            deadline.arm(TimeoutPhase.WRITE);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
     }
 }
@@ -0,0 +1,27 @@
+package com.webserver;
+
+public enum ExecutorStrategy {
+    FIXED("fixed"),
+    WORK_STEALING("work-stealing"),
+    VIRTUAL("virtual");
+
+    private final String configName;
+
+    ExecutorStrategy(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public static ExecutorStrategy fromConfigName(String name) {
+        for (ExecutorStrategy strategy : values()) {
+            if (strategy.configName.equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown executor strategy: " + name +
+                " (expected fixed, work-stealing or virtual)");
+    }
+}
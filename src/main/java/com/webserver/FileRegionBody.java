@@ -0,0 +1,66 @@
+package com.webserver;
+
+import com.webserver.logging.StructuredLogger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileRegionBody implements ResponseBody {
+    private static final StructuredLogger logger = new StructuredLogger(FileRegionBody.class);
+    // A blocking sendfile of a large region can run for minutes; returning between slices
+    // lets the caller refresh its write deadline so only a stalled client times out
+    private static final long MAX_TRANSFER_PER_CALL = 4L * 1024 * 1024;
+
+    private final Path path;
+    private final long position;
+    private final long count;
+    private FileChannel fileChannel;
+    private long written = 0;
+
+    public FileRegionBody(Path path, long position, long count) {
+        this.path = path;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public long contentLength() {
+        return count;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        // Opened on first write so a response that is never sent holds no descriptor
+        if (fileChannel == null) {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        long sliceEnd = Math.min(count, written + MAX_TRANSFER_PER_CALL);
+        while (written < sliceEnd) {
+            // transferTo uses sendfile(2) for socket targets, so file bytes never enter the heap
+            long transferred = fileChannel.transferTo(position + written, sliceEnd - written, channel);
+            if (transferred <= 0) {
+                if (position + written >= fileChannel.size()) {
+                    throw new IOException("File truncated while sending: " + path);
+                }
+                return false;
+            }
+            written += transferred;
+        }
+        return written == count;
+    }
+
+    @Override
+    public void close() {
+        if (fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                logger.warn("Error closing file {}: {}", path, e.getMessage());
+            }
+            fileChannel = null;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.webserver;
+
+import com.webserver.metrics.RequestTiming;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental HTTP/1.x request parser. Bytes are fed in as they arrive, from a
+ * blocking stream or a non-blocking channel; the parser keeps its position between
+ * calls and returns a {@link Request} once the request line, headers and body are
+ * complete. Any bytes after that request are left in the buffer for the next call.
+ */
+public class HttpRequestParser {
+    private enum State { REQUEST_LINE, HEADERS, BODY }
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SP = ' ';
+    private static final byte HT = '\t';
+    private static final byte COLON = ':';
+    private static final int INITIAL_LINE_CAPACITY = 256;
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    // Shared instances for common tokens so the hot path does not allocate Strings for them
+    private static final String[] KNOWN_METHODS = {"GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH"};
+    private static final String[] KNOWN_VERSIONS = {"HTTP/1.1", "HTTP/1.0"};
+    private static final String[] KNOWN_HEADERS = {
+            "host", "connection", "content-length", "content-type", "user-agent", "accept",
+            "accept-encoding", "accept-language", "cache-control", "if-none-match",
+            "if-modified-since", "range", "if-range", "origin", "referer", "cookie",
+            "transfer-encoding"
+    };
+
+    private final int maxRequestLineLength;
+    private final int maxHeaderBytes;
+    private final int maxBodyBytes;
+
+    private State state = State.REQUEST_LINE;
+    private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+    private int lineLength = 0;
+    private int headerBytes = 0;
+    private Request request;
+    private long contentLength = -1;
+    private byte[] body;
+    private int bodyRead;
+    private long startedAt;
+    private long headersParsedAt;
+
+    public HttpRequestParser() {
+        this(ServerConfig.getInstance().getInt("server.http.max-request-line", 8192),
+                ServerConfig.getInstance().getInt("server.http.max-header-bytes", 16384),
+                ServerConfig.getInstance().getInt("server.http.max-body-bytes", 1024 * 1024));
+    }
+
+    public HttpRequestParser(int maxRequestLineLength, int maxHeaderBytes, int maxBodyBytes) {
+        this.maxRequestLineLength = maxRequestLineLength;
+        this.maxHeaderBytes = maxHeaderBytes;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Consumes bytes from {@code buffer} (in read mode) and returns the request once it
+     * is complete, or {@code null} if more input is needed.
+     */
+    public Request parse(ByteBuffer buffer) throws HttpParseException {
+        if (startedAt == 0 && buffer.hasRemaining()) {
+            startedAt = System.nanoTime();
+        }
+        while (buffer.hasRemaining()) {
+            if (state == State.BODY) {
+                int count = Math.min(buffer.remaining(), body.length - bodyRead);
+                buffer.get(body, bodyRead, count);
+                bodyRead += count;
+                if (bodyRead == body.length) {
+                    return complete();
+                }
+                continue;
+            }
+
+            byte b = buffer.get();
+            if (b != LF) {
+                append(b);
+                continue;
+            }
+
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == CR) {
+                length--;
+            }
+            lineLength = 0;
+
+            if (state == State.REQUEST_LINE) {
+                // Clients may send stray CRLFs between pipelined requests
+                if (length > 0) {
+                    parseRequestLine(length);
+                    state = State.HEADERS;
+                }
+            } else if (length == 0) {
+                if (RequestTiming.isEnabled()) {
+                    headersParsedAt = System.nanoTime();
+                }
+                if (contentLength <= 0) {
+                    return complete();
+                }
+                if (contentLength > maxBodyBytes) {
+                    throw new HttpParseException(413, "Request body exceeds " + maxBodyBytes + " bytes");
+                }
+                body = new byte[(int) contentLength];
+                bodyRead = 0;
+                state = State.BODY;
+            } else {
+                parseHeader(length);
+            }
+        }
+        return null;
+    }
+
+    /** True when no byte of the next request has been consumed yet. */
+    public boolean isIdle() {
+        return state == State.REQUEST_LINE && lineLength == 0;
+    }
+
+    /** True once the headers of the current request are complete and only its body is missing. */
+    public boolean isReadingBody() {
+        return state == State.BODY;
+    }
+
+    public void reset() {
+        state = State.REQUEST_LINE;
+        lineLength = 0;
+        headerBytes = 0;
+        request = null;
+        contentLength = -1;
+        body = null;
+        bodyRead = 0;
+        startedAt = 0;
+        headersParsedAt = 0;
+    }
+
+    private void append(byte b) throws HttpParseException {
+        if (state == State.REQUEST_LINE) {
+            if (lineLength >= maxRequestLineLength) {
+                throw new HttpParseException(414, "Request line exceeds " + maxRequestLineLength + " bytes");
+            }
+        } else if (++headerBytes > maxHeaderBytes) {
+            throw new HttpParseException(431, "Request headers exceed " + maxHeaderBytes + " bytes");
+        }
+
+        if (lineLength == line.length) {
+            byte[] larger = new byte[line.length * 2];
+            System.arraycopy(line, 0, larger, 0, lineLength);
+            line = larger;
+        }
+        line[lineLength++] = b;
+    }
+
+    private void parseRequestLine(int length) throws HttpParseException {
+        int firstSpace = indexOf(SP, 0, length);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(SP, firstSpace + 1, length);
+        if (firstSpace <= 0 || secondSpace <= firstSpace + 1 || secondSpace == length - 1) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+
+        String method = token(KNOWN_METHODS, 0, firstSpace, false);
+        String target = new String(line, firstSpace + 1, secondSpace - firstSpace - 1, StandardCharsets.ISO_8859_1);
+        String version = token(KNOWN_VERSIONS, secondSpace + 1, length - secondSpace - 1, false);
+        if (!version.startsWith("HTTP/1.")) {
+            throw new HttpParseException(505, "Unsupported protocol version: " + version);
+        }
+
+        request = new Request(method, target);
+        request.setVersion(version);
+    }
+
+    private void parseHeader(int length) throws HttpParseException {
+        int colon = indexOf(COLON, 0, length);
+        if (colon <= 0 || line[0] == SP || line[0] == HT) {
+            throw new HttpParseException(400, "Malformed header line");
+        }
+
+        int valueStart = colon + 1;
+        int valueEnd = length;
+        while (valueStart < valueEnd && isWhitespace(line[valueStart])) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+            valueEnd--;
+        }
+
+        String name = token(KNOWN_HEADERS, 0, colon, true);
+        if (name.equals("content-length")) {
+            long parsed = parseContentLength(valueStart, valueEnd);
+            if (contentLength >= 0 && contentLength != parsed) {
+                throw new HttpParseException(400, "Conflicting Content-Length headers");
+            }
+            contentLength = parsed;
+        } else if (name.equals("transfer-encoding")) {
+            throw new HttpParseException(501, "Transfer-Encoding request bodies are not supported");
+        }
+
+        request.addHeader(name, new String(line, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+    }
+
+    private long parseContentLength(int start, int end) throws HttpParseException {
+        if (start == end || end - start > 18) {
+            throw new HttpParseException(400, "Invalid Content-Length");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new HttpParseException(400, "Invalid Content-Length");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private Request complete() {
+        Request completed = request;
+        completed.setBodyBytes(body != null ? body : EMPTY_BODY);
+        completed.setArrivedAt(startedAt);
+        if (RequestTiming.isEnabled()) {
+            completed.setTiming(new RequestTiming(startedAt, headersParsedAt, System.nanoTime()));
+        }
+        reset();
+        return completed;
+    }
+
+    private String token(String[] known, int start, int length, boolean lowerCase) {
+        for (String candidate : known) {
+            if (candidate.length() == length && regionMatches(candidate, start, lowerCase)) {
+                return candidate;
+            }
+        }
+        String value = new String(line, start, length, StandardCharsets.ISO_8859_1).trim();
+        return lowerCase ? value.toLowerCase() : value;
+    }
+
+    private boolean regionMatches(String candidate, int start, boolean ignoreCase) {
+        for (int i = 0; i < candidate.length(); i++) {
+            int b = line[start + i];
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == SP || b == HT;
+    }
+}
@@ -1,17 +1,28 @@
 package com.webserver;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import com.webserver.logging.StructuredLogger;
 import com.webserver.metrics.MetricsCollector;
+import com.webserver.timeout.HashedTimerWheel;
 
-public class MultiThreadedServer {
+public class MultiThreadedServer implements WebServer {
+    private static final StructuredLogger logger = new StructuredLogger(MultiThreadedServer.class);
     private final int port;
     private final ThreadPoolManager threadPool;
     private final RequestProcessor requestProcessor;
     private final AtomicLong connectionCounter;
+    private final byte[] overloadResponse;
+    private final HashedTimerWheel timerWheel;
+    private volatile ServerSocketChannel serverChannel;
     private volatile boolean isRunning = false;
+    private volatile int boundPort;
     public static MetricsCollector getMetricsCollector() {
         return MetricsCollector.getInstance();
     }
@@ -19,50 +30,66 @@ public class MultiThreadedServer {
     public MultiThreadedServer(int port, int threadCount) {
         this.port = port;
         this.threadPool = new ThreadPoolManager(threadCount);
-        this.requestProcessor = new RequestProcessor();
+        this.requestProcessor = new RequestProcessor(threadCount);
         this.connectionCounter = new AtomicLong(0);
+        this.timerWheel = new HashedTimerWheel("connection-timer", 100, 512);
+        this.overloadResponse = Response.encodeServiceUnavailable(
+                ServerConfig.getInstance().getInt("server.executor.retry-after-seconds", 1));
 
         System.out.println("🏗️  Multi-threaded server created");
         System.out.println("📍 Port: " + port);
         System.out.println("🧵 Thread pool size: " + threadCount);
     }
 
+    @Override
     public void start() {
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        // A channel-backed socket lets ConnectionHandler write responses with gathering writes
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            this.serverChannel = serverChannel;
             isRunning = true;
+            boundPort = serverChannel.socket().getLocalPort();
 
-            System.out.println("🚀 Multi-threaded server started on http://localhost:" + port);
+            System.out.println("🚀 Multi-threaded server started on http://localhost:" + boundPort);
             System.out.println("📝 Try these URLs:");
-            System.out.println("   • http://localhost:" + port + "/hello");
-            System.out.println("   • http://localhost:" + port + "/time");
-            System.out.println("   • http://localhost:" + port + "/stats");
-            System.out.println("   • http://localhost:" + port + "/slow");
+            System.out.println("   • http://localhost:" + boundPort + "/hello");
+            System.out.println("   • http://localhost:" + boundPort + "/time");
+            System.out.println("   • http://localhost:" + boundPort + "/stats");
+            System.out.println("   • http://localhost:" + boundPort + "/slow");
             System.out.println("⏹️  Press Ctrl+C to stop");
             System.out.println();
 
             while (isRunning) {
                 try {
 
-                    Socket clientSocket = serverSocket.accept();
+                    Socket clientSocket = serverChannel.accept().socket();
+                    long acceptedAt = System.nanoTime();
 
                     long connectionId = connectionCounter.incrementAndGet();
 
-                    System.out.println("🔗 New connection #" + connectionId + " from " +
-                            clientSocket.getRemoteSocketAddress());
+                    logger.debug("New connection #{} from {}", connectionId, clientSocket.getRemoteSocketAddress());
 
                     ConnectionHandler handler = new ConnectionHandler(
                             clientSocket,
                             requestProcessor,
-                            connectionId
+                            threadPool,
+                            overloadResponse,
+                            connectionId,
+                            acceptedAt,
+                            timerWheel
                     );
 
-                    threadPool.execute(handler);
-
-                    System.out.println("📤 Connection #" + connectionId + " submitted to thread pool");
+                    try {
+                        threadPool.execute(handler, () -> rejectConnection(clientSocket, connectionId));
+                    } catch (RejectedExecutionException e) {
+                        rejectConnection(clientSocket, connectionId);
+                    }
 
+                } catch (ClosedChannelException e) {
+                    break;
                 } catch (IOException e) {
                     if (isRunning) {
-                        System.err.println("❌ Error accepting connection: " + e.getMessage());
+                        logger.error("Error accepting connection: {}", e.getMessage());
                     }
                 }
             }
@@ -74,12 +101,35 @@ public class MultiThreadedServer {
         }
     }
 
+    // Answers with the pre-encoded 503 without reading the request; a fresh socket's send
+    // buffer takes it in one write, so this never blocks the acceptor.
+    private void rejectConnection(Socket clientSocket, long connectionId) {
+        logger.warn("Shedding connection #{}: server overloaded", connectionId);
+        try (Socket socket = clientSocket) {
+            socket.getChannel().write(ByteBuffer.wrap(overloadResponse));
+        } catch (IOException e) {
+            logger.warn("Error rejecting connection #{}: {}", connectionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return boundPort;
+    }
+
+    @Override
     public void stop() {
         if (isRunning) {
             System.out.println("\n🛑 Stopping server...");
             isRunning = false;
 
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                System.err.println("❌ Error closing server socket: " + e.getMessage());
+            }
             threadPool.shutdown();
+            timerWheel.stop();
 
             System.out.println("📊 Final stats:");
             System.out.println("   • Total connections handled: " + connectionCounter.get());
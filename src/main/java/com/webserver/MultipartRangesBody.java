@@ -0,0 +1,75 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A multipart/byteranges body (RFC 9110 14.6). Each part's data comes from a
+ * {@link ResponseBody} slice, so file-backed ranges are still sent with transferTo.
+ */
+public class MultipartRangesBody implements ResponseBody {
+    private final String boundary;
+    private final String partContentType;
+    private final long totalLength;
+    private final List<ResponseBody> parts = new ArrayList<>();
+    private long contentLength = 0;
+    private int current = 0;
+
+    public MultipartRangesBody(String partContentType, long totalLength) {
+        this.boundary = "range-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        this.partContentType = partContentType;
+        this.totalLength = totalLength;
+    }
+
+    public String getContentType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    public void addPart(long start, long end, ResponseBody data) {
+        String head = (parts.isEmpty() ? "" : "\r\n") + "--" + boundary + "\r\n"
+                + "Content-Type: " + partContentType + "\r\n"
+                + "Content-Range: bytes " + start + "-" + end + "/" + totalLength + "\r\n\r\n";
+        append(new ByteBufferBody(ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1))));
+        append(data);
+    }
+
+    public MultipartRangesBody finish() {
+        append(new ByteBufferBody(ByteBuffer.wrap(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1))));
+        return this;
+    }
+
+    private void append(ResponseBody part) {
+        parts.add(part);
+        contentLength += part.contentLength();
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (current < parts.size()) {
+            ResponseBody part = parts.get(current);
+            if (!part.writeTo(channel)) {
+                return false;
+            }
+            part.close();
+            current++;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (int i = current; i < parts.size(); i++) {
+            parts.get(i).close();
+        }
+    }
+}
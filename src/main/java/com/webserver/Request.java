@@ -1,18 +1,37 @@
 package com.webserver;
 
+import com.webserver.metrics.RequestTiming;
+import com.webserver.routing.PathParameters;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 public class Request {
     private String method;
     private String path;
+    private String queryString;
+    private Map<String, String> queryParameters;
+    private String routeTemplate;
+    private PathParameters pathParameters = PathParameters.EMPTY;
+    private RequestTiming timing;
+    private long queueWaitNanos;
+    private long arrivedAt;
     private String version = "HTTP/1.1";
     private Map<String, String> headers = new HashMap<>();
-    private String body = "";
+    private byte[] body = new byte[0];
+    private String bodyText = "";
 
-    public Request(String method, String path) {
+    public Request(String method, String target) {
         this.method = method;
-        this.path = path;
+        int query = target.indexOf('?');
+        if (query >= 0) {
+            this.path = target.substring(0, query);
+            this.queryString = target.substring(query + 1);
+        } else {
+            this.path = target;
+        }
     }
 
     public String getMethod() { return method; }
@@ -21,6 +40,38 @@ public class Request {
     public String getPath() { return path; }
     public void setPath(String path) { this.path = path; }
 
+    public String getQueryString() { return queryString; }
+
+    /** The first value of a query parameter, URL-decoded, or null when it is absent. */
+    public String getQueryParameter(String name) {
+        if (queryString == null) {
+            return null;
+        }
+        if (queryParameters == null) {
+            queryParameters = parseQuery(queryString);
+        }
+        return queryParameters.get(name);
+    }
+
+    /** The template of the route that matched this request, e.g. {@code /api/users/{id:long}}. */
+    public String getRouteTemplate() { return routeTemplate; }
+    public void setRouteTemplate(String routeTemplate) { this.routeTemplate = routeTemplate; }
+
+    public PathParameters getPathParameters() { return pathParameters; }
+    public void setPathParameters(PathParameters pathParameters) { this.pathParameters = pathParameters; }
+
+    /** Stage timestamps for this request, or null when request timing is disabled. */
+    public RequestTiming getTiming() { return timing; }
+    public void setTiming(RequestTiming timing) { this.timing = timing; }
+
+    /** Time the request, or the connection that carried it, waited for a worker. */
+    public long getQueueWaitNanos() { return queueWaitNanos; }
+    public void setQueueWaitNanos(long queueWaitNanos) { this.queueWaitNanos = queueWaitNanos; }
+
+    /** {@link System#nanoTime()} when the first byte of the request was read. */
+    public long getArrivedAt() { return arrivedAt; }
+    public void setArrivedAt(long arrivedAt) { this.arrivedAt = arrivedAt; }
+
     public String getVersion() { return version; }
     public void setVersion(String version) { this.version = version; }
 
@@ -34,8 +85,24 @@ public class Request {
 
     public Map<String, String> getHeaders() { return headers; }
 
-    public String getBody() { return body; }
-    public void setBody(String body) { this.body = body; }
+    public String getBody() {
+        if (bodyText == null) {
+            bodyText = new String(body, StandardCharsets.UTF_8);
+        }
+        return bodyText;
+    }
+
+    public void setBody(String body) {
+        this.bodyText = body;
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public byte[] getBodyBytes() { return body; }
+
+    public void setBodyBytes(byte[] body) {
+        this.body = body;
+        this.bodyText = null;
+    }
 
     public String getContentType() {
         return getHeader("content-type");
@@ -46,14 +113,66 @@ public class Request {
         return lengthStr != null ? Integer.parseInt(lengthStr) : 0;
     }
 
+    public boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if ("HTTP/1.0".equals(version)) {
+            return hasConnectionOption(connection, "keep-alive");
+        }
+        return !hasConnectionOption(connection, "close");
+    }
+
+    // Connection is a comma-separated list of options, e.g. "close, TE"
+    private static boolean hasConnectionOption(String connection, String option) {
+        if (connection == null) {
+            return false;
+        }
+        for (String token : connection.split(",")) {
+            if (token.trim().equalsIgnoreCase(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean isJsonRequest() {
         String contentType = getContentType();
         return contentType != null && contentType.toLowerCase().contains("application/json");
     }
 
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int equals = query.indexOf('=', start);
+                String name;
+                String value;
+                if (equals < 0 || equals > end) {
+                    name = query.substring(start, end);
+                    value = "";
+                } else {
+                    name = query.substring(start, equals);
+                    value = query.substring(equals + 1, end);
+                }
+                try {
+                    parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                            URLDecoder.decode(value, StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    // Malformed percent-encoding: ignore the parameter
+                }
+            }
+            start = end + 1;
+        }
+        return parameters;
+    }
+
     @Override
     public String toString() {
         return String.format("Request{method='%s', path='%s', contentType='%s', bodyLength=%d}",
-                method, path, getContentType(), body.length());
+                method, path, getContentType(), body.length);
     }
 }
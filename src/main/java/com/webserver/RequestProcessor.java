@@ -1,44 +1,179 @@
 package com.webserver;
 
+import com.webserver.concurrency.AdaptiveConcurrencyLimiter;
 import com.webserver.handlers.UserApiHandler;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.LatencyHistogram;
 import com.webserver.metrics.MetricsCollector;
+import com.webserver.metrics.RequestTiming;
+import com.webserver.routing.Router;
+import com.webserver.utils.GzipUtils;
+import com.webserver.utils.JsonUtils;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class RequestProcessor {
+    private static final StructuredLogger logger = new StructuredLogger(RequestProcessor.class);
+    private static final long DEFAULT_SLOW_DELAY_MS = 2000;
+    private static final long MAX_SLOW_DELAY_MS = 60_000;
+    private static final int[] STATS_WINDOW_MINUTES = {1, 5, MetricsCollector.LATENCY_WINDOW_MINUTES};
+
     private final StaticFileHandler staticFileHandler;
     private final UserApiHandler userApiHandler;
+    private final Router router;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final String retryAfterSeconds;
     private final AtomicLong requestCount = new AtomicLong(0);
 
-    public RequestProcessor() {
+    /** {@code workerThreads} is the initial concurrency limit unless one is configured. */
+    public RequestProcessor(int workerThreads) {
         this.staticFileHandler = new StaticFileHandler();
         this.userApiHandler = new UserApiHandler();
+        ServerConfig config = ServerConfig.getInstance();
+
+        this.router = new Router()
+                .get("/health", request -> createHealthResponse())
+                .get("/stats", request -> createStatsResponse())
+                .get("/time", request -> createTimeResponse())
+                .addAsync("GET", "/slow", config.getLong("server.async.timeout-ms", 30_000), this::createSlowResponse)
+                .fallback("/*", staticFileHandler::handleStaticFile);
+        userApiHandler.registerRoutes(router);
+
+        this.concurrencyLimiter = config.getBoolean("server.concurrency.adaptive", true)
+                ? new AdaptiveConcurrencyLimiter(
+                        config.getInt("server.concurrency.initial-limit", workerThreads),
+                        config.getInt("server.concurrency.min-limit", 4),
+                        config.getInt("server.concurrency.max-limit", 500))
+                : null;
+        this.retryAfterSeconds = String.valueOf(config.getInt("server.executor.retry-after-seconds", 1));
     }
 
+    /** Processes a request on the calling thread, waiting for an asynchronous handler to finish. */
     public Response processRequest(Request request) {
+        return processRequestAsync(request).toCompletableFuture().join();
+    }
+
+    /**
+     * Runs the request's handler and returns a stage that always completes with a response:
+     * handler failures become 500s and handler timeouts 503s. Cancelling the returned
+     * future, e.g. because the client went away, cancels the handler's own stage too.
+     */
+    public CompletableFuture<Response> processRequestAsync(Request request) {
+        if (concurrencyLimiter == null) {
+            return complete(request, dispatch(request));
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            return CompletableFuture.completedFuture(serviceUnavailable());
+        }
+        // The limiter bounds work done on workers, so an asynchronous handler releases its
+        // slot when it returns its stage rather than when the response is ready. The sample
+        // includes the time spent waiting for a worker, which is where queueing shows first
+        long startTime = System.nanoTime();
+        CompletableFuture<Response> handled;
+        try {
+            handled = dispatch(request);
+        } finally {
+            concurrencyLimiter.release(request.getQueueWaitNanos() + System.nanoTime() - startTime);
+        }
+        return complete(request, handled);
+    }
+
+    private CompletableFuture<Response> complete(Request request, CompletableFuture<Response> handled) {
+        CompletableFuture<Response> result = handled.handle((response, error) -> {
+            RequestTiming timing = request.getTiming();
+            if (timing != null) {
+                timing.handlerFinished();
+            }
+            response = error != null ? errorResponse(request, error) : GzipUtils.compressIfAccepted(request, response);
+            // HTTP/1.0 has no chunked encoding: stream raw bytes and close the connection instead
+            if (response.getResponseBody() instanceof StreamingBody streaming && "HTTP/1.0".equals(request.getVersion())) {
+                streaming.disableChunking();
+            }
+            if (timing != null && RequestTiming.isHeaderEnabled()) {
+                response.addHeader("Server-Timing", timing.toServerTiming());
+            }
+            return response;
+        });
+        if (!handled.isDone()) {
+            result.whenComplete((response, error) -> {
+                if (error instanceof CancellationException) {
+                    handled.cancel(true);
+                }
+            });
+        }
+        return result;
+    }
+
+    private CompletableFuture<Response> dispatch(Request request) {
         long reqId = requestCount.incrementAndGet();
         String path = request.getPath();
         String method = request.getMethod();
 
-        System.out.println("🍳 Processing request #" + reqId + ": " + method + " " + path);
+        logger.debug("Processing request #{}: {} {}", reqId, method, path);
 
+        RequestTiming timing = request.getTiming();
+        if (timing != null) {
+            timing.handlerStarted();
+        }
         try {
-            if (path.startsWith("/api/users")) {
-                return userApiHandler.handleUserApi(request);
-            } else if (path.equals("/health")) {
-                return createHealthResponse();
-            } else if (path.equals("/stats")) {
-                return createStatsResponse();
-            } else if (path.equals("/time")) {
-                return createTimeResponse();
-            } else {
-                return staticFileHandler.handleStaticFile(path);
+            return router.route(request).toCompletableFuture();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            if (timing != null) {
+                timing.handlerReturned();
             }
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error processing request: " + e.getMessage());
-            return new Response(500, "<h1>500 - Internal Server Error</h1>");
+    private Response errorResponse(Request request, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            logger.warn("Handler timed out: {} {}", request.getMethod(), request.getPath());
+            return serviceUnavailable();
+        }
+        logger.error("Error processing {} {}: {}", request.getMethod(), request.getPath(), cause.getMessage(), cause);
+        return new Response(500, "<h1>500 - Internal Server Error</h1>");
+    }
+
+    private Response serviceUnavailable() {
+        Response response = new Response(503, "<h1>503 - Service Unavailable</h1>");
+        response.addHeader("Retry-After", retryAfterSeconds);
+        return response;
+    }
+
+    // GET /slow?delay=ms - answers after a delay without holding a worker while it waits
+    private CompletableFuture<Response> createSlowResponse(Request request) {
+        long delayMs = DEFAULT_SLOW_DELAY_MS;
+        String delay = request.getQueryParameter("delay");
+        if (delay != null) {
+            try {
+                delayMs = Math.max(0, Math.min(MAX_SLOW_DELAY_MS, Long.parseLong(delay)));
+            } catch (NumberFormatException e) {
+                return CompletableFuture.completedFuture(new Response(400, "<h1>400 - Invalid delay</h1>"));
+            }
         }
+        long requestedDelay = delayMs;
+        return CompletableFuture.supplyAsync(() -> new Response(200, """
+            <!DOCTYPE html>
+            <html>
+            <head><title>Slow Response</title></head>
+            <body>
+                <h1>🐢 Slow Response</h1>
+                <p>Answered after %d ms</p>
+            </body>
+            </html>
+            """.formatted(requestedDelay)),
+                CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
     }
 
     private Response createHealthResponse() {
@@ -60,26 +195,41 @@ public class RequestProcessor {
         return new Response(200, html);
     }
 
+    // GET /stats - request count and per-route latency percentiles over recent windows
     private Response createStatsResponse() {
-        MetricsCollector metrics = MetricsCollector.getInstance();
+        Map<String, Object> routes = new TreeMap<>();
+        MetricsCollector.getInstance().getRouteLatencies().forEach((route, latency) -> {
+            Map<String, Object> windows = new LinkedHashMap<>();
+            for (int minutes : STATS_WINDOW_MINUTES) {
+                windows.put(minutes + "m", latencySummary(latency.snapshot(minutes)));
+            }
+            routes.put(route, windows);
+        });
 
-        String html = """
-            <!DOCTYPE html>
-            <html>
-            <head><title>Server Statistics</title></head>
-            <body>
-                <h1>📊 Server Statistics</h1>
-                <p>Total Requests Processed: %d</p>
-                <p>Active Thread: %s</p>
-                <p>Server Uptime: Running</p>
-            </body>
-            </html>
-            """.formatted(
-                requestCount.get(),
-                Thread.currentThread().getName()
-        );
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timestamp", Instant.now().toString());
+        stats.put("requests", requestCount.get());
+        stats.put("routes", routes);
 
-        return new Response(200, html);
+        Response response = new Response(200, JsonUtils.toJson(stats));
+        response.addHeader("Content-Type", "application/json; charset=UTF-8");
+        return response;
+    }
+
+    private static Map<String, Object> latencySummary(LatencyHistogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getCount());
+        summary.put("p50_ms", millis(histogram.getValueAtPercentile(50)));
+        summary.put("p90_ms", millis(histogram.getValueAtPercentile(90)));
+        summary.put("p99_ms", millis(histogram.getValueAtPercentile(99)));
+        summary.put("p999_ms", millis(histogram.getValueAtPercentile(99.9)));
+        summary.put("max_ms", millis(histogram.getMax()));
+        return summary;
+    }
+
+    // Milliseconds rounded to the microsecond
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
     }
 
     private Response createTimeResponse() {
@@ -1,50 +1,308 @@
 package com.webserver;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Response {
+    // Bodies up to this size are copied behind the head so the response goes out as one buffer
+    private static final int COALESCE_LIMIT = 16 * 1024;
+    private static final String DEFAULT_CONTENT_TYPE = "text/html; charset=UTF-8";
+
+    private static final byte[][] STATUS_LINES = new byte[600][];
+    private static final byte[] SERVER_HEADER = encodeHeaders("Server", "Enterprise-WebServer/1.0");
+    private static final byte[] CONNECTION_CLOSE = encodeHeaders("Connection", "close");
+    private static final byte[] CONNECTION_KEEP_ALIVE = encodeHeaders("Connection", "keep-alive");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = encodeHeaders("Transfer-Encoding", "chunked");
+    private static final byte[] CONTENT_LENGTH_PREFIX = "Content-Length: ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final Map<String, byte[]> CONTENT_TYPE_HEADERS = new ConcurrentHashMap<>();
+    private static final Map<Integer, byte[]> KEEP_ALIVE_HEADERS = new ConcurrentHashMap<>();
+
+    static {
+        for (int code = 100; code < STATUS_LINES.length; code++) {
+            STATUS_LINES[code] = ("HTTP/1.1 " + code + " " + getReasonPhrase(code) + "\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
     private int statusCode;
     private String reasonPhrase;
-    private Map<String, String> headers = new HashMap<>();
+    private String contentType = DEFAULT_CONTENT_TYPE;
+    private byte[] connectionHeader;
+    private byte[] encodedHeaders;
+    private Map<String, String> headers = new LinkedHashMap<>();
     private byte[] body = new byte[0];
+    private ByteBuffer bufferBody;
+    private ResponseBody responseBody;
+    private boolean bodyOmitted;
 
     public Response(int statusCode, String body) {
         this.statusCode = statusCode;
         this.reasonPhrase = getReasonPhrase(statusCode);
 
-        addHeader("Server", "Enterprise-WebServer/1.0");
-        addHeader("Connection", "close");
-        addHeader("Content-Type", "text/html; charset=UTF-8");
-
         setTextBody(body);
     }
 
+    /** Encodes name/value pairs once into a header block that can be attached to many responses. */
+    public static byte[] encodeHeaders(String... namesAndValues) {
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            block.append(namesAndValues[i]).append(": ").append(namesAndValues[i + 1]).append("\r\n");
+        }
+        return block.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A complete 503 response that closes the connection, encoded once so overload can be
+     * signalled without parsing the request or touching a worker thread.
+     */
+    public static byte[] encodeServiceUnavailable(int retryAfterSeconds) {
+        Response response = new Response(503, "<h1>503 - Service Unavailable</h1>");
+        response.addHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setKeepAlive(false, 0);
+        ByteBuffer encoded = response.toByteBuffers(null)[0];
+        return Arrays.copyOf(encoded.array(), encoded.limit());
+    }
+
     public void setTextBody(String textBody) {
-        this.body = textBody.getBytes();
-        addHeader("Content-Length", String.valueOf(this.body.length));
+        setBinaryBody(textBody.getBytes(StandardCharsets.UTF_8), contentType);
     }
 
     public void setBinaryBody(byte[] binaryBody, String contentType) {
         this.body = binaryBody;
-        addHeader("Content-Type", contentType);
-        addHeader("Content-Length", String.valueOf(binaryBody.length));
+        this.bufferBody = null;
+        this.responseBody = null;
+        this.contentType = contentType;
+    }
+
+    /** Uses a shared, possibly off-heap buffer (e.g. a mapped file) as the body without copying it. */
+    public void setBufferBody(ByteBuffer buffer, String contentType) {
+        this.body = new byte[0];
+        this.bufferBody = buffer;
+        this.responseBody = null;
+        this.contentType = contentType;
+    }
+
+    /** Uses a body that is written to the channel after the head, such as a file region. */
+    public void setResponseBody(ResponseBody responseBody, String contentType) {
+        this.body = new byte[0];
+        this.bufferBody = null;
+        this.responseBody = responseBody;
+        this.contentType = contentType;
+    }
+
+    /** Streams the body as the writer produces it, using chunked transfer encoding. */
+    public void setStreamingBody(BodyWriter writer, String contentType) {
+        setResponseBody(new StreamingBody(writer), contentType);
+    }
+
+    /**
+     * True when the body has no known length and is not chunked (HTTP/1.0 clients), so the
+     * connection has to be closed to mark its end.
+     */
+    public boolean isCloseDelimited() {
+        return !bodyOmitted && responseBody instanceof StreamingBody streaming && !streaming.isChunked();
+    }
+
+    /** The body to write after {@link #toByteBuffers(ByteBuffer)}, or null when those buffers hold all of it. */
+    public ResponseBody getResponseBody() {
+        return bodyOmitted ? null : responseBody;
+    }
+
+    /**
+     * Sends only the head, still announcing the length the body would have had, as the
+     * answer to a HEAD request must.
+     */
+    public void omitBody() {
+        bodyOmitted = true;
+        if (responseBody != null) {
+            responseBody.close();
+        }
+    }
+
+    public void setKeepAlive(boolean keepAlive, int idleTimeoutSeconds) {
+        if (keepAlive) {
+            connectionHeader = KEEP_ALIVE_HEADERS.computeIfAbsent(idleTimeoutSeconds, timeout -> concat(
+                    CONNECTION_KEEP_ALIVE, encodeHeaders("Keep-Alive", "timeout=" + timeout)));
+        } else {
+            connectionHeader = CONNECTION_CLOSE;
+        }
     }
 
     public void addHeader(String name, String value) {
-        headers.put(name, value);
+        if (name.equalsIgnoreCase("Content-Type")) {
+            contentType = value;
+        } else if (!name.equalsIgnoreCase("Content-Length")) {
+            headers.put(name, value);
+        }
+    }
+
+    public String getHeader(String name) {
+        if (name.equalsIgnoreCase("Content-Type")) {
+            return contentType;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** Attaches a block produced by {@link #encodeHeaders(String...)}. */
+    public void addEncodedHeaders(byte[] headerBlock) {
+        encodedHeaders = encodedHeaders == null ? headerBlock : concat(encodedHeaders, headerBlock);
     }
 
     public String toHttpString() {
-        StringBuilder response = new StringBuilder();
-        response.append("HTTP/1.1 ").append(statusCode).append(" ").append(reasonPhrase).append("\r\n");
+        ByteBuffer head = ByteBuffer.allocate(headLength());
+        writeHead(head);
+        return new String(head.array(), 0, head.position(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Serializes the response into buffers ready for a single gathering write. Small
+     * byte[] bodies are copied behind the head into {@code scratch} (or a new buffer when
+     * it is null or too small); larger and buffer-backed bodies are referenced, not copied.
+     * A {@link ResponseBody} is not included and must be written afterwards. An omitted
+     * body yields the head alone.
+     */
+    public ByteBuffer[] toByteBuffers(ByteBuffer scratch) {
+        int headLength = headLength();
+        byte[] bodyBytes = getBody();
+        boolean coalesce = bufferBody == null && bodyBytes.length <= COALESCE_LIMIT;
+        int needed = coalesce && !bodyOmitted ? headLength + bodyBytes.length : headLength;
 
+        ByteBuffer head = scratch != null && scratch.capacity() >= needed ? scratch.clear() : ByteBuffer.allocate(needed);
+        writeHead(head);
+        if (bodyOmitted) {
+            return new ByteBuffer[]{head.flip()};
+        }
+        if (bufferBody != null) {
+            return new ByteBuffer[]{head.flip(), bufferBody.duplicate()};
+        }
+        if (coalesce) {
+            head.put(bodyBytes);
+            return new ByteBuffer[]{head.flip()};
+        }
+        return new ByteBuffer[]{head.flip(), ByteBuffer.wrap(bodyBytes)};
+    }
+
+    public long getContentLength() {
+        if (responseBody != null) {
+            return responseBody.contentLength();
+        }
+        if (bufferBody != null) {
+            return bufferBody.remaining();
+        }
+        return getBody().length;
+    }
+
+    private int headLength() {
+        int length = statusLine(statusCode, reasonPhrase).length + SERVER_HEADER.length
+                + contentTypeHeader().length + CRLF.length;
+        if (isChunked()) {
+            length += TRANSFER_ENCODING_CHUNKED.length;
+        } else if (hasContentLength()) {
+            length += CONTENT_LENGTH_PREFIX.length + digits(getContentLength()) + CRLF.length;
+        }
+        if (connectionHeader != null) {
+            length += connectionHeader.length;
+        }
+        if (encodedHeaders != null) {
+            length += encodedHeaders.length;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            length += header.getKey().length() + 2 + header.getValue().length() + 2;
+        }
+        return length;
+    }
+
+    private void writeHead(ByteBuffer buffer) {
+        buffer.put(statusLine(statusCode, reasonPhrase));
+        buffer.put(SERVER_HEADER);
+        if (connectionHeader != null) {
+            buffer.put(connectionHeader);
+        }
+        buffer.put(contentTypeHeader());
+        if (isChunked()) {
+            buffer.put(TRANSFER_ENCODING_CHUNKED);
+        } else if (hasContentLength()) {
+            buffer.put(CONTENT_LENGTH_PREFIX);
+            putDecimal(buffer, getContentLength());
+            buffer.put(CRLF);
+        }
+        if (encodedHeaders != null) {
+            buffer.put(encodedHeaders);
+        }
         for (Map.Entry<String, String> header : headers.entrySet()) {
-            response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            putAscii(buffer, header.getKey());
+            buffer.put((byte) ':').put((byte) ' ');
+            putAscii(buffer, header.getValue());
+            buffer.put(CRLF);
         }
+        buffer.put(CRLF);
+    }
+
+    // 204 and 304 responses never carry a body, so they must not announce a length for one;
+    // close-delimited streaming bodies have no length to announce
+    private boolean hasContentLength() {
+        return statusCode != 204 && statusCode != 304 && getContentLength() >= 0;
+    }
+
+    private boolean isChunked() {
+        return responseBody instanceof StreamingBody streaming && streaming.isChunked();
+    }
+
+    private byte[] contentTypeHeader() {
+        return CONTENT_TYPE_HEADERS.computeIfAbsent(contentType, type -> encodeHeaders("Content-Type", type));
+    }
+
+    private static byte[] statusLine(int statusCode, String reasonPhrase) {
+        if (statusCode >= 100 && statusCode < STATUS_LINES.length) {
+            return STATUS_LINES[statusCode];
+        }
+        return ("HTTP/1.1 " + statusCode + " " + reasonPhrase + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void putAscii(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void putDecimal(ByteBuffer buffer, long value) {
+        int start = buffer.position();
+        int end = start + digits(value);
+        for (int i = end - 1; i >= start; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
 
-        response.append("\r\n");
-        return response.toString();
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] combined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, combined, 0, first.length);
+        System.arraycopy(second, 0, combined, first.length, second.length);
+        return combined;
     }
 
     public byte[] getBody() {
@@ -53,13 +311,24 @@ public class Response {
 
     public int getStatusCode() { return statusCode; }
 
-    private String getReasonPhrase(int code) {
+    private static String getReasonPhrase(int code) {
         return switch (code) {
             case 200 -> "OK";
             case 201 -> "Created";
+            case 206 -> "Partial Content";
+            case 304 -> "Not Modified";
             case 400 -> "Bad Request";
             case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 413 -> "Payload Too Large";
+            case 414 -> "URI Too Long";
+            case 416 -> "Range Not Satisfiable";
+            case 431 -> "Request Header Fields Too Large";
             case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
+            case 505 -> "HTTP Version Not Supported";
             default -> "Unknown";
         };
     }
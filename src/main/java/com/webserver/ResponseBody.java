@@ -0,0 +1,31 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response body that is written to the socket after the head instead of being held
+ * as a byte array, e.g. a region of a file sent with {@code FileChannel.transferTo}.
+ */
+public interface ResponseBody {
+    /** Length in bytes, or -1 when unknown and the body is sent with chunked encoding. */
+    long contentLength();
+
+    /**
+     * Writes as much of the body as the channel accepts. Returns true once everything
+     * has been written; a non-blocking caller should wait for writability and call again.
+     */
+    boolean writeTo(WritableByteChannel channel) throws IOException;
+
+    /**
+     * True when the last {@link #writeTo} stopped because the body has no bytes ready yet,
+     * rather than because the channel was full. The caller should wait to be told that
+     * more data is available instead of waiting for writability.
+     */
+    default boolean isAwaitingData() {
+        return false;
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,81 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+public class ServerConfig {
+    private static final ServerConfig INSTANCE = load();
+
+    private final Properties properties;
+
+    private ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ServerConfig getInstance() {
+        return INSTANCE;
+    }
+
+    private static ServerConfig load() {
+        Properties properties = new Properties();
+        try (InputStream in = ServerConfig.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to load application.properties: " + e.getMessage());
+        }
+        // -Dkey=value on the command line overrides application.properties
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("server.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new ServerConfig(properties);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("❌ Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("❌ Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    public int getKeepAliveMaxRequests() {
+        return getInt("server.keepalive.max-requests", 100);
+    }
+
+    public int getKeepAliveIdleTimeoutMs() {
+        return getInt("server.keepalive.idle-timeout-ms", 5000);
+    }
+}
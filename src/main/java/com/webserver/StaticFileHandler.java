@@ -1,41 +1,294 @@
 package com.webserver;
 
+import com.webserver.cache.CachedAsset;
+import com.webserver.cache.StaticAssetCache;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.utils.GzipUtils;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StaticFileHandler {
+    private static final StructuredLogger logger = new StructuredLogger(StaticFileHandler.class);
+    private static final int MAX_RANGES = 16;
+
     private final String staticRoot = "src/main/resources/static";
+    private final StaticAssetCache cache;
+    private final String cacheControl;
 
-    public Response handleStaticFile(String requestPath) {
+    public StaticFileHandler() {
+        ServerConfig config = ServerConfig.getInstance();
+        this.cacheControl = config.getString("server.static.cache-control", "no-cache");
+        this.cache = new StaticAssetCache(Paths.get(staticRoot),
+                config.getLong("server.static.cache-max-bytes", 64L * 1024 * 1024),
+                config.getLong("server.static.cache-entry-max-bytes", 256 * 1024),
+                cacheControl);
+        this.cache.startWatching();
+    }
+
+    public Response handleStaticFile(Request request) {
+        String requestPath = request.getPath();
         try {
             String cleanPath = sanitizePath(requestPath);
             if (cleanPath.isEmpty() || cleanPath.equals("/")) {
                 cleanPath = "index.html";
             }
 
-            Path filePath = Paths.get(staticRoot, cleanPath);
+            Path filePath = cache.getRoot().resolve(cleanPath).normalize();
+            if (!filePath.startsWith(cache.getRoot())) {
+                return notFound(requestPath);
+            }
+            String key = cache.keyFor(filePath);
+            String contentType = getContentType(cleanPath);
 
-            if (Files.exists(filePath) && Files.isReadable(filePath)) {
-                byte[] fileContent = Files.readAllBytes(filePath);
-                String contentType = getContentType(cleanPath);
+            CachedAsset asset = cache.get(key);
+            if (asset == null) {
+                asset = cache.load(key, filePath, contentType);
+            }
+            if (asset != null) {
+                return serveCached(request, asset);
+            }
+
+            // Too large to cache: validate against the file attributes and stream with sendfile
+            BasicFileAttributes attributes = readAttributes(filePath);
+            if (attributes == null || !attributes.isRegularFile() || !Files.isReadable(filePath)) {
+                return notFound(requestPath);
+            }
 
-                Response response = new Response(200, "");
-                response.setBinaryBody(fileContent, contentType);
+            long size = attributes.size();
+            long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+            String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+            byte[] validators = Response.encodeHeaders(
+                    "ETag", etag,
+                    "Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                            Instant.ofEpochMilli(lastModifiedMillis).atOffset(ZoneOffset.UTC)),
+                    "Cache-Control", cacheControl,
+                    "Accept-Ranges", "bytes");
 
-                System.out.println("📁 Served static file: " + cleanPath + " (" + fileContent.length + " bytes)");
+            if (isNotModified(request, etag, lastModifiedMillis / 1000)) {
+                Response response = new Response(304, "");
+                response.addEncodedHeaders(validators);
                 return response;
-            } else {
-                return new Response(404, "<h1>404 - File Not Found</h1><p>The file <strong>" + requestPath + "</strong> was not found.</p>");
             }
 
+            List<long[]> ranges = requestedRanges(request, size, etag, lastModifiedMillis / 1000);
+            if (ranges != null) {
+                Response response = rangeResponse(ranges, size, contentType,
+                        (start, length) -> new FileRegionBody(filePath, start, length));
+                response.addEncodedHeaders(validators);
+                return response;
+            }
+
+            Response response = new Response(200, "");
+            response.setResponseBody(new FileRegionBody(filePath, 0, size), contentType);
+            response.addEncodedHeaders(validators);
+
+            logger.debug("Served static file: {} ({} bytes)", cleanPath, size);
+            return response;
+
         } catch (IOException e) {
-            System.err.println("❌ Error reading static file: " + e.getMessage());
+            logger.error("Error reading static file: {}", e.getMessage());
             return new Response(500, "<h1>500 - Internal Server Error</h1>");
         }
     }
 
+    private Response serveCached(Request request, CachedAsset asset) {
+        // Served entirely from memory: no stat, no read, no compression, no header formatting
+        boolean gzip = asset.hasGzipVariant() && GzipUtils.acceptsGzip(request);
+        String etag = gzip ? asset.getGzipEtag() : asset.getEtag();
+        byte[] headers = gzip ? asset.getGzipHeaders() : asset.getHeaders();
+
+        if (isNotModified(request, etag, asset.getLastModifiedSeconds())) {
+            Response response = new Response(304, "");
+            response.addEncodedHeaders(headers);
+            return response;
+        }
+
+        // Byte ranges always address the identity representation
+        List<long[]> ranges = requestedRanges(request, asset.getContentLength(),
+                asset.getEtag(), asset.getLastModifiedSeconds());
+        if (ranges != null) {
+            ByteBuffer content = asset.getContent();
+            Response response = rangeResponse(ranges, asset.getContentLength(), asset.getContentType(),
+                    (start, length) -> new ByteBufferBody(slice(content, start, length)));
+            response.addEncodedHeaders(asset.getHeaders());
+            return response;
+        }
+
+        Response response = new Response(200, "");
+        response.setBufferBody(gzip ? asset.getGzipContent() : asset.getContent(), asset.getContentType());
+        response.addEncodedHeaders(headers);
+        if (gzip) {
+            MetricsCollector.getInstance().recordCompressionSaved(
+                    asset.getContentLength() - asset.getGzipContent().capacity());
+        }
+        return response;
+    }
+
+    private interface RegionSource {
+        ResponseBody region(long start, long length);
+    }
+
+    private Response rangeResponse(List<long[]> ranges, long size, String contentType, RegionSource source) {
+        if (ranges.isEmpty()) {
+            Response response = new Response(416, "");
+            response.addHeader("Content-Range", "bytes */" + size);
+            return response;
+        }
+
+        Response response = new Response(206, "");
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setResponseBody(source.region(range[0], range[1] - range[0] + 1), contentType);
+            response.addHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+            return response;
+        }
+
+        MultipartRangesBody body = new MultipartRangesBody(contentType, size);
+        for (long[] range : ranges) {
+            body.addPart(range[0], range[1], source.region(range[0], range[1] - range[0] + 1));
+        }
+        response.setResponseBody(body.finish(), body.getContentType());
+        return response;
+    }
+
+    /**
+     * Returns the satisfiable ranges of a Range request as inclusive [start, end] pairs, an
+     * empty list when none can be satisfied (416), or null when the full representation
+     * should be sent: no or malformed Range header, a failed If-Range, or too many ranges.
+     */
+    private List<long[]> requestedRanges(Request request, long size, String etag, long lastModifiedSeconds) {
+        String rangeHeader = request.getHeader("range");
+        if (rangeHeader == null || !request.getMethod().equals("GET")) {
+            return null;
+        }
+
+        String ifRange = request.getHeader("if-range");
+        if (ifRange != null && !ifRangeMatches(ifRange.trim(), etag, lastModifiedSeconds)) {
+            return null;
+        }
+
+        String spec = rangeHeader.trim();
+        if (!spec.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = spec.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String rangeSpec : specs) {
+            String part = rangeSpec.trim();
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (dash == 0) {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong(part.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(part.substring(0, dash));
+                    end = dash == part.length() - 1 ? Long.MAX_VALUE : Long.parseLong(part.substring(dash + 1));
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                if (start < size) {
+                    ranges.add(new long[]{start, end});
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private boolean ifRangeMatches(String ifRange, String etag, long lastModifiedSeconds) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.equals(etag);
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() == lastModifiedSeconds;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer content, long start, long length) {
+        ByteBuffer slice = content.duplicate();
+        slice.position((int) start).limit((int) (start + length));
+        return slice.slice();
+    }
+
+    private Response notFound(String requestPath) {
+        return new Response(404, "<h1>404 - File Not Found</h1><p>The file <strong>" + requestPath + "</strong> was not found.</p>");
+    }
+    private boolean isNotModified(Request request, String etag, long lastModifiedSeconds) {
+        String method = request.getMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            return false;
+        }
+
+        // If-None-Match takes precedence over If-Modified-Since (RFC 9110 13.2.2)
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String ifModifiedSince = request.getHeader("if-modified-since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                return lastModifiedSeconds <= since;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private BasicFileAttributes readAttributes(Path filePath) throws IOException {
+        try {
+            return Files.readAttributes(filePath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
     private String sanitizePath(String path) {
         if (path.startsWith("/")) {
             path = path.substring(1);
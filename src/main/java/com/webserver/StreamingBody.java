@@ -0,0 +1,250 @@
+package com.webserver;
+
+import com.webserver.logging.StructuredLogger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * A body of unknown length produced by a {@link BodyWriter} while it is being sent, framed
+ * with {@code Transfer-Encoding: chunked} (or left unframed and delimited by connection
+ * close for HTTP/1.0 clients).
+ *
+ * <p>On a blocking channel the writer runs inside {@link #writeTo} and writes straight to
+ * the socket. For a non-blocking channel the producing thread calls {@link #produce} while
+ * the event loop drains chunks through a small bounded queue; a full queue blocks the
+ * producer, so a slow client throttles the handler instead of growing the heap.
+ */
+public class StreamingBody implements ResponseBody {
+    private static final StructuredLogger logger = new StructuredLogger(StreamingBody.class);
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_QUEUED_CHUNKS = 8;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+    private static final ByteBuffer ABORTED = ByteBuffer.allocate(0);
+
+    private final BodyWriter writer;
+    private boolean chunked = true;
+    private UnaryOperator<OutputStream> encoder;
+
+    // Pipe mode (non-blocking channels)
+    private BlockingQueue<ByteBuffer> queue;
+    private Runnable onData;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private ByteBuffer current;
+    private boolean awaitingData = false;
+    private volatile boolean closed = false;
+
+    public StreamingBody(BodyWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /** Sends raw bytes delimited by connection close, for clients that do not understand chunked. */
+    public void disableChunking() {
+        this.chunked = false;
+    }
+
+    /** Wraps the writer's output stream, e.g. in a GZIPOutputStream. */
+    public void setEncoder(UnaryOperator<OutputStream> encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Switches to pipe mode. {@code onData} is invoked (coalesced) whenever new chunks
+     * are queued and must arrange for {@link #writeTo} to be called on the channel owner.
+     */
+    public void openPipe(Runnable onData) {
+        this.queue = new ArrayBlockingQueue<>(MAX_QUEUED_CHUNKS);
+        this.onData = onData;
+    }
+
+    /** Runs the writer on the calling thread, feeding the pipe opened by {@link #openPipe}. */
+    public void produce() {
+        try {
+            // Not try-with-resources: closing writes the last chunk, which must not follow a failure
+            OutputStream out = encode(new ChunkOutputStream(null));
+            writer.writeTo(out);
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                logger.warn("Streaming body aborted: {}", e.getMessage());
+            }
+            queue.clear();
+            queue.offer(ABORTED);
+            signal();
+        }
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        if (queue == null) {
+            // Blocking channel: produce directly into the socket
+            OutputStream out = encode(new ChunkOutputStream(channel));
+            writer.writeTo(out);
+            out.close();
+            return true;
+        }
+
+        // Everything queued so far is drained below; later chunks must signal again
+        wakeupPending.set(false);
+        while (true) {
+            if (current == null) {
+                current = queue.poll();
+                if (current == null) {
+                    awaitingData = true;
+                    return false;
+                }
+                awaitingData = false;
+                if (current == END_OF_STREAM) {
+                    return true;
+                }
+                if (current == ABORTED) {
+                    throw new IOException("Response stream aborted by handler");
+                }
+            }
+            channel.write(current);
+            if (current.hasRemaining()) {
+                return false;
+            }
+            current = null;
+        }
+    }
+
+    @Override
+    public boolean isAwaitingData() {
+        return awaitingData;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+
+    private OutputStream encode(OutputStream out) {
+        return encoder != null ? encoder.apply(out) : out;
+    }
+
+    private void signal() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            onData.run();
+        }
+    }
+
+    private void enqueue(ByteBuffer chunk) throws IOException {
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new IOException("Client connection closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming response");
+        }
+        signal();
+    }
+
+    private class ChunkOutputStream extends OutputStream {
+        private final WritableByteChannel channel;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+        private boolean finished = false;
+
+        ChunkOutputStream(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(data, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                flushChunk();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            flush();
+            if (chunked) {
+                emit(ByteBuffer.wrap(LAST_CHUNK));
+            }
+            if (channel == null) {
+                enqueue(END_OF_STREAM);
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (closed) {
+                throw new IOException("Client connection closed");
+            }
+            String size = chunked ? Integer.toHexString(count) : "";
+            ByteBuffer chunk = ByteBuffer.allocate(size.length() + count + (chunked ? 4 : 0));
+            if (chunked) {
+                chunk.put(size.getBytes(StandardCharsets.ISO_8859_1)).put(CRLF);
+            }
+            chunk.put(buffer, 0, count);
+            if (chunked) {
+                chunk.put(CRLF);
+            }
+            count = 0;
+            emit(chunk.flip());
+        }
+
+        private void emit(ByteBuffer chunk) throws IOException {
+            if (channel == null) {
+                enqueue(chunk);
+                return;
+            }
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+    }
+}
@@ -1,26 +1,131 @@
 package com.webserver;
 
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.metrics.ThreadPoolCollector;
+import io.prometheus.client.CollectorRegistry;
+
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ThreadPoolManager {
+    private static final String VIRTUAL_EXECUTOR_CLASS = "com.webserver.VirtualThreadExecutors";
+
     private final ExecutorService threadPool;
+    private final ExecutorStrategy strategy;
     private final int threadCount;
+    private final int queueDepth;
+    private final long queueTimeoutNanos;
+    private final AtomicInteger queuedTasks = new AtomicInteger(0);
+    private final AtomicInteger activeTasks = new AtomicInteger(0);
+    private final AtomicLong completedTasks = new AtomicLong(0);
+    private final AtomicLong shedTasks = new AtomicLong(0);
+    private final ThreadPoolCollector collector;
 
     public ThreadPoolManager(int threadCount) {
+        this(threadCount, ExecutorStrategy.fromConfigName(
+                ServerConfig.getInstance().getString("server.executor.strategy", "fixed")));
+    }
+
+    public ThreadPoolManager(int threadCount, ExecutorStrategy strategy) {
+        ServerConfig config = ServerConfig.getInstance();
         this.threadCount = threadCount;
-        this.threadPool = Executors.newFixedThreadPool(threadCount);
-        System.out.println("🧵 Thread pool created with " + threadCount + " threads");
+        this.queueDepth = config.getInt("server.executor.queue-depth", 256);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                config.getLong("server.executor.queue-timeout-ms", 1000));
+        this.threadPool = createExecutor(strategy, threadCount, queueDepth);
+        this.strategy = threadPool instanceof ThreadPoolExecutor && strategy == ExecutorStrategy.VIRTUAL
+                ? ExecutorStrategy.FIXED
+                : strategy;
+        System.out.println("🧵 Thread pool created: " + this.strategy.getConfigName() +
+                (this.strategy == ExecutorStrategy.VIRTUAL ? "" : " with " + threadCount + " threads") +
+                ", queue depth " + queueDepth);
+        this.collector = new ThreadPoolCollector(this).register();
+    }
+
+    private static ExecutorService createExecutor(ExecutorStrategy strategy, int threadCount, int queueDepth) {
+        return switch (strategy) {
+            case FIXED -> newBoundedPool(threadCount, queueDepth);
+            case WORK_STEALING -> new ForkJoinPool(threadCount,
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            case VIRTUAL -> createVirtualThreadExecutor(threadCount, queueDepth);
+        };
+    }
+
+    private static ExecutorService newBoundedPool(int threadCount, int queueDepth) {
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth));
+    }
+
+    // The virtual-thread executor is compiled only by the JDK 21 Maven profile,
+    // so it is looked up reflectively to keep this class buildable on release 17.
+    private static ExecutorService createVirtualThreadExecutor(int fallbackThreadCount, int queueDepth) {
+        try {
+            Class<?> factory = Class.forName(VIRTUAL_EXECUTOR_CLASS);
+            return (ExecutorService) factory.getMethod("newExecutor").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("⚠️  Virtual threads unavailable (requires JDK 21 and the virtual-threads " +
+                    "build profile), falling back to a fixed pool: " + e);
+            return newBoundedPool(fallbackThreadCount, queueDepth);
+        }
     }
 
     public void execute(Runnable task) {
-        threadPool.execute(task);
+        execute(task, null);
+    }
+
+    /**
+     * Queues a task, throwing {@link RejectedExecutionException} if queue-depth tasks are
+     * already waiting. The depth is counted here rather than by the executor so every
+     * strategy is bounded. When the task waits longer than the queue timeout and
+     * {@code onExpired} is not null, {@code onExpired} runs in its place.
+     */
+    public void execute(Runnable task, Runnable onExpired) {
+        MetricsCollector metrics = MetricsCollector.getInstance();
+        int depth = queuedTasks.incrementAndGet();
+        if (depth > queueDepth) {
+            queuedTasks.decrementAndGet();
+            shedTasks.incrementAndGet();
+            metrics.recordRequestShed("queue_full");
+            throw new RejectedExecutionException("Work queue is full (" + queueDepth + " tasks)");
+        }
+
+        long enqueuedAt = System.nanoTime();
+        try {
+            threadPool.execute(() -> {
+                long waited = System.nanoTime() - enqueuedAt;
+                queuedTasks.decrementAndGet();
+                metrics.recordQueueWait(waited / 1_000_000_000.0);
+
+                if (onExpired != null && waited > queueTimeoutNanos) {
+                    shedTasks.incrementAndGet();
+                    metrics.recordRequestShed("deadline");
+                    onExpired.run();
+                    return;
+                }
+
+                activeTasks.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeTasks.decrementAndGet();
+                    completedTasks.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedTasks.decrementAndGet();
+            throw e;
+        }
     }
 
     public void shutdown() {
         System.out.println("🛑 Shutting down thread pool...");
+        CollectorRegistry.defaultRegistry.unregister(collector);
         threadPool.shutdown();
 
         try {
@@ -36,30 +141,49 @@ public class ThreadPoolManager {
         }
     }
 
+    public ExecutorStrategy getStrategy() {
+        return strategy;
+    }
+
     public ThreadPoolInfo getInfo() {
-        ThreadPoolExecutor executor = (ThreadPoolExecutor) threadPool;
-        return new ThreadPoolInfo(
-                executor.getCorePoolSize(),
-                executor.getActiveCount(),
-                executor.getCompletedTaskCount()
-        );
+        int active = activeTasks.get();
+        int poolSize;
+
+        if (threadPool instanceof ThreadPoolExecutor executor) {
+            poolSize = executor.getPoolSize();
+        } else if (threadPool instanceof ForkJoinPool pool) {
+            poolSize = pool.getPoolSize();
+        } else {
+            // Thread-per-task: every running task owns exactly one virtual thread
+            poolSize = active;
+        }
+
+        // Counted at admission, so the depth is the same for every strategy
+        return new ThreadPoolInfo(strategy, poolSize, active, queuedTasks.get(), completedTasks.get(), shedTasks.get());
     }
 
     public static class ThreadPoolInfo {
+        public final ExecutorStrategy strategy;
         public final int totalThreads;
         public final int activeThreads;
+        public final long queuedTasks;
         public final long completedTasks;
+        public final long shedTasks;
 
-        public ThreadPoolInfo(int totalThreads, int activeThreads, long completedTasks) {
+        public ThreadPoolInfo(ExecutorStrategy strategy, int totalThreads, int activeThreads,
+                              long queuedTasks, long completedTasks, long shedTasks) {
+            this.strategy = strategy;
             this.totalThreads = totalThreads;
             this.activeThreads = activeThreads;
+            this.queuedTasks = queuedTasks;
             this.completedTasks = completedTasks;
+            this.shedTasks = shedTasks;
         }
 
         @Override
         public String toString() {
-            return String.format("Threads: %d/%d active, Completed: %d",
-                    activeThreads, totalThreads, completedTasks);
+            return String.format("Strategy: %s, Threads: %d/%d active, Queued: %d, Completed: %d, Shed: %d",
+                    strategy.getConfigName(), activeThreads, totalThreads, queuedTasks, completedTasks, shedTasks);
         }
     }
 }
@@ -0,0 +1,10 @@
+package com.webserver;
+
+public interface WebServer {
+    void start();
+
+    void stop();
+
+    /** The port the server is listening on, or 0 until it has bound its socket. */
+    int getPort();
+}
@@ -2,6 +2,7 @@ package com.webserver;
 
 import com.webserver.metrics.MetricsCollector;
 import com.webserver.metrics.MetricsServer;
+import com.webserver.nio.NioServer;
 
 public class WebServerApp {
     public static void main(String[] args) {
@@ -10,6 +11,8 @@ public class WebServerApp {
         int port = 8080;
         int threadCount = 50;
         int metricsPort = 9090;
+        String mode = "threaded";
+        int eventLoopCount = Runtime.getRuntime().availableProcessors();
 
         if (args.length > 0) {
             try {
@@ -29,15 +32,35 @@ public class WebServerApp {
             }
         }
 
+        if (args.length > 2) {
+            mode = args[2].toLowerCase();
+            if (!mode.equals("threaded") && !mode.equals("nio")) {
+                System.err.println("❌ Invalid server mode: " + args[2] + " (expected 'threaded' or 'nio')");
+                return;
+            }
+        }
+
+        if (args.length > 3) {
+            try {
+                eventLoopCount = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                System.err.println("❌ Invalid event loop count: " + args[3]);
+                return;
+            }
+        }
+
         System.out.println("📍 Port: " + port);
         System.out.println("🧵 Thread Count: " + threadCount);
+        System.out.println("⚙️  Mode: " + mode);
 
         try {
             MetricsCollector metricsCollector = MetricsCollector.getInstance();
             MetricsServer metricsServer = new MetricsServer(metricsPort);
             metricsServer.start();
 
-            MultiThreadedServer server = new MultiThreadedServer(port, threadCount);
+            WebServer server = mode.equals("nio")
+                    ? new NioServer(port, threadCount, eventLoopCount)
+                    : new MultiThreadedServer(port, threadCount);
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\n🚨 Shutdown signal received");
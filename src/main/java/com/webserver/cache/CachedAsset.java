@@ -0,0 +1,110 @@
+package com.webserver.cache;
+
+import com.webserver.Response;
+import com.webserver.utils.GzipUtils;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+public class CachedAsset {
+    private final String key;
+    private final ByteBuffer content;
+    private final String contentType;
+    private final String etag;
+    private final long lastModifiedSeconds;
+    private final byte[] headers;
+    private final ByteBuffer gzipContent;
+    private final String gzipEtag;
+    private final byte[] gzipHeaders;
+    private volatile long lastAccess;
+
+    CachedAsset(String key, ByteBuffer content, String contentType, String etag,
+                long lastModifiedMillis, String cacheControl) {
+        this.key = key;
+        this.content = content.asReadOnlyBuffer();
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModifiedSeconds = lastModifiedMillis / 1000;
+        String lastModified = formatHttpDate(lastModifiedMillis);
+
+        // The gzip variant is compressed once here and served to every client that accepts it
+        byte[] compressed = null;
+        if (GzipUtils.isEnabled() && GzipUtils.isCompressible(contentType)
+                && content.remaining() >= GzipUtils.getMinBytes()) {
+            compressed = GzipUtils.gzip(content);
+            if (compressed.length >= content.remaining()) {
+                compressed = null;
+            }
+        }
+
+        if (compressed != null) {
+            this.gzipContent = ByteBuffer.wrap(compressed).asReadOnlyBuffer();
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.headers = Response.encodeHeaders(
+                    "ETag", etag,
+                    "Last-Modified", lastModified,
+                    "Cache-Control", cacheControl,
+                    "Accept-Ranges", "bytes",
+                    "Vary", "Accept-Encoding");
+            this.gzipHeaders = Response.encodeHeaders(
+                    "ETag", gzipEtag,
+                    "Last-Modified", lastModified,
+                    "Cache-Control", cacheControl,
+                    "Vary", "Accept-Encoding",
+                    "Content-Encoding", "gzip");
+        } else {
+            this.gzipContent = null;
+            this.gzipEtag = null;
+            this.headers = Response.encodeHeaders(
+                    "ETag", etag,
+                    "Last-Modified", lastModified,
+                    "Cache-Control", cacheControl,
+                    "Accept-Ranges", "bytes");
+            this.gzipHeaders = null;
+        }
+        this.lastAccess = System.nanoTime();
+    }
+
+    static String formatHttpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    public String getKey() { return key; }
+
+    /** Shared read-only view of the content; callers must duplicate before changing its position. */
+    public ByteBuffer getContent() { return content; }
+
+    /** Bytes held by this entry, including its gzip variant. */
+    public int getSize() {
+        return content.capacity() + (gzipContent != null ? gzipContent.capacity() : 0);
+    }
+
+    public int getContentLength() { return content.capacity(); }
+
+    public boolean hasGzipVariant() { return gzipContent != null; }
+
+    public ByteBuffer getGzipContent() { return gzipContent; }
+
+    public String getGzipEtag() { return gzipEtag; }
+
+    /** Header block for the gzip variant, including Content-Encoding and Vary. */
+    public byte[] getGzipHeaders() { return gzipHeaders; }
+
+    public String getContentType() { return contentType; }
+
+    public String getEtag() { return etag; }
+
+    public long getLastModifiedSeconds() { return lastModifiedSeconds; }
+
+    /** Pre-encoded ETag, Last-Modified and Cache-Control header lines. */
+    public byte[] getHeaders() { return headers; }
+
+    long getLastAccess() { return lastAccess; }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+}
@@ -0,0 +1,241 @@
+package com.webserver.cache;
+
+import com.webserver.metrics.MetricsCollector;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of small static files, keyed by path relative to the static root.
+ * Lookups are lock-free; eviction of the least recently used entries only runs when an
+ * insert pushes the cache over its byte budget. A WatchService on the root drops entries
+ * as soon as the underlying files change.
+ */
+public class StaticAssetCache {
+    private final Path root;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final String cacheControl;
+    private final Map<String, CachedAsset> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong(0);
+    // Bumped on every invalidation so a load racing with a file change is not cached
+    private final AtomicLong generation = new AtomicLong(0);
+    private WatchService watchService;
+
+    public StaticAssetCache(Path root, long maxBytes, long maxEntryBytes, String cacheControl) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.cacheControl = cacheControl;
+    }
+
+    public CachedAsset get(String key) {
+        CachedAsset asset = entries.get(key);
+        if (asset != null) {
+            asset.touch();
+            MetricsCollector.getInstance().recordStaticCacheHit();
+        } else {
+            MetricsCollector.getInstance().recordStaticCacheMiss();
+        }
+        return asset;
+    }
+
+    /**
+     * Loads {@code file} into the cache. Returns null when the file is missing, not a
+     * regular file or too large to cache.
+     */
+    public CachedAsset load(String key, Path file, String contentType) throws IOException {
+        long loadGeneration = generation.get();
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile() || attributes.size() > maxEntryBytes || !Files.isReadable(file)) {
+            return null;
+        }
+
+        MappedByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        CachedAsset asset = new CachedAsset(key, content, contentType, strongEtag(content),
+                attributes.lastModifiedTime().toMillis(), cacheControl);
+
+        if (generation.get() == loadGeneration) {
+            CachedAsset previous = entries.put(key, asset);
+            totalBytes.addAndGet(asset.getSize() - (previous != null ? previous.getSize() : 0));
+            if (totalBytes.get() > maxBytes) {
+                evict();
+            }
+            MetricsCollector.getInstance().setStaticCacheBytes(totalBytes.get());
+        }
+        return asset;
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        remove(key);
+        // A changed directory invalidates everything below it
+        String prefix = key + "/";
+        for (String cached : entries.keySet()) {
+            if (cached.startsWith(prefix)) {
+                remove(cached);
+            }
+        }
+        MetricsCollector.getInstance().setStaticCacheBytes(totalBytes.get());
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (String cached : entries.keySet()) {
+            remove(cached);
+        }
+        MetricsCollector.getInstance().setStaticCacheBytes(totalBytes.get());
+    }
+
+    private void remove(String key) {
+        CachedAsset removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.getSize());
+        }
+    }
+
+    private synchronized void evict() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<CachedAsset> candidates = new ArrayList<>(entries.values());
+        candidates.sort(Comparator.comparingLong(CachedAsset::getLastAccess));
+        for (CachedAsset candidate : candidates) {
+            if (totalBytes.get() <= maxBytes) {
+                break;
+            }
+            if (entries.remove(candidate.getKey(), candidate)) {
+                totalBytes.addAndGet(-candidate.getSize());
+                MetricsCollector.getInstance().recordStaticCacheEviction();
+            }
+        }
+    }
+
+    private static String strongEtag(MappedByteBuffer content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content.duplicate());
+            byte[] hash = digest.digest();
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public void startWatching() {
+        if (!Files.isDirectory(root)) {
+            System.err.println("⚠️  Static root " + root + " not found, cache invalidation disabled");
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerRecursively(root);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to watch static root: " + e.getMessage());
+            return;
+        }
+
+        Thread watcher = new Thread(this::watchLoop, "static-cache-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("👀 Watching " + root + " for static file changes");
+    }
+
+    private void registerRecursively(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                Path directory = (Path) watchKey.watchable();
+
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        invalidateAll();
+                        continue;
+                    }
+                    Path changed = directory.resolve((Path) event.context());
+                    invalidate(keyFor(changed));
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        try {
+                            registerRecursively(changed);
+                        } catch (IOException e) {
+                            System.err.println("❌ Failed to watch new directory " + changed + ": " + e.getMessage());
+                        }
+                    }
+                }
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher stopped
+        }
+    }
+
+    /** Cache key for a file: its path relative to the static root, with '/' separators. */
+    public String keyFor(Path file) {
+        return root.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("❌ Error closing static cache watcher: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.webserver.capture;
+
+import com.webserver.Request;
+import com.webserver.ServerConfig;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.utils.JsonUtils;
+import com.webserver.utils.RingBufferWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a sample of served requests as JSONL that the load generator can replay. A
+ * request thread only rolls the sampling dice and, for a sampled request, queues a small
+ * record holding the request, status and timestamps on a lock-free ring buffer; header
+ * selection, redaction and JSON encoding happen on the writer thread. The output file is
+ * rotated once it reaches {@code server.capture.max-file-bytes}.
+ */
+public final class TrafficCapture {
+    private static final StructuredLogger logger = new StructuredLogger(TrafficCapture.class);
+    private static final boolean ENABLED = ServerConfig.getInstance().getBoolean("server.capture.enabled", false);
+    private static final int BATCH_SIZE = 256;
+    private static final String REDACTED = "REDACTED";
+
+    private static class Holder {
+        private static final TrafficCapture INSTANCE = new TrafficCapture();
+    }
+
+    private final double sampleRate;
+    private final RingBufferWriter<Record> writer;
+    private final Set<String> headers;
+    private final Set<String> redactedHeaders;
+    private final int maxBodyBytes;
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    // Arrival offsets are relative to JVM start rather than to this lazily created instance,
+    // so the requests that were in flight when it was created keep their real spacing
+    private final long epochNanos = System.nanoTime()
+            - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+
+    // Writer thread only
+    private OutputStream output;
+    private long fileBytes;
+
+    private TrafficCapture() {
+        ServerConfig config = ServerConfig.getInstance();
+        this.sampleRate = Double.parseDouble(config.getString("server.capture.sample-rate", "0.01"));
+        int capacity = Integer.highestOneBit(Math.max(2, config.getInt("server.capture.buffer-size", 4096)));
+        this.headers = headerSet(config.getString("server.capture.headers", "*"));
+        this.redactedHeaders = headerSet(config.getString("server.capture.redact-headers",
+                "authorization,proxy-authorization,cookie,x-api-key"));
+        this.maxBodyBytes = config.getInt("server.capture.max-body-bytes", 65536);
+        this.file = Path.of(config.getString("server.capture.file", "logs/requests.jsonl"));
+        this.maxFileBytes = config.getLong("server.capture.max-file-bytes", 64L * 1024 * 1024);
+        this.maxFiles = Math.max(1, config.getInt("server.capture.max-files", 5));
+
+        // The file is flushed whenever the writer empties the buffer, so a flush of the
+        // writer also gets the captured requests to disk
+        this.writer = new RingBufferWriter<>("capture-writer", capacity, BATCH_SIZE, this::write, this::flushOutput);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> writer.flush(2, TimeUnit.SECONDS), "capture-flush"));
+        System.out.println("🎥 Capturing " + (sampleRate * 100) + "% of requests to " + file);
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Offers a served request for capture. {@code arrivedAt} is the {@link System#nanoTime()}
+     * at which the request started to arrive and {@code latencyNanos} the time from then
+     * until its response was handed to the socket, parsing and queueing included. Does
+     * nothing unless capture is enabled and the request is sampled.
+     */
+    public static void record(Request request, int status, long arrivedAt, long latencyNanos) {
+        if (ENABLED) {
+            Holder.INSTANCE.offer(request, status, arrivedAt, latencyNanos);
+        }
+    }
+
+    private void offer(Request request, int status, long arrivedAt, long latencyNanos) {
+        if (sampleRate < 1.0 && (sampleRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (!writer.offer(new Record(request, status, arrivedAt, latencyNanos))) {
+            MetricsCollector.getInstance().recordTrafficCapture("dropped");
+        }
+    }
+
+    private void write(Record record) {
+        try {
+            byte[] line = (JsonUtils.toCompactJson(record.toEntry()) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (output == null || fileBytes + line.length > maxFileBytes) {
+                openNextFile();
+            }
+            output.write(line);
+            fileBytes += line.length;
+            MetricsCollector.getInstance().recordTrafficCapture("written");
+        } catch (IOException | RuntimeException e) {
+            MetricsCollector.getInstance().recordTrafficCapture("failed");
+            logger.warn("Failed to write captured request: {}", e.getMessage());
+            closeOutput();
+        }
+    }
+
+    // Shifts requests.jsonl to requests.jsonl.1, .1 to .2 and so on, dropping the oldest
+    private void openNextFile() throws IOException {
+        closeOutput();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (Files.exists(file) && Files.size(file) > 0) {
+            Files.deleteIfExists(rotated(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                if (Files.exists(rotated(i))) {
+                    Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (maxFiles > 1) {
+                Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        output = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 64 * 1024);
+        fileBytes = 0;
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void flushOutput() {
+        if (output != null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                logger.warn("Failed to flush captured requests: {}", e.getMessage());
+                closeOutput();
+            }
+        }
+    }
+
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                // Nothing more to save; the next record opens a new file
+            }
+            output = null;
+        }
+    }
+
+    private static Set<String> headerSet(String names) {
+        Set<String> set = new HashSet<>();
+        Arrays.stream(names.split(","))
+                .map(name -> name.trim().toLowerCase())
+                .filter(name -> !name.isEmpty())
+                .forEach(set::add);
+        return set;
+    }
+
+    private static boolean isText(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml")
+                || type.startsWith("application/x-www-form-urlencoded");
+    }
+
+    private final class Record {
+        private final Request request;
+        private final int status;
+        private final long arrivedAt;
+        private final long latencyNanos;
+
+        private Record(Request request, int status, long arrivedAt, long latencyNanos) {
+            this.request = request;
+            this.status = status;
+            this.arrivedAt = arrivedAt;
+            this.latencyNanos = latencyNanos;
+        }
+
+        // The fields LoadRequest reads, plus what the server observed
+        private Map<String, Object> toEntry() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("method", request.getMethod());
+            String query = request.getQueryString();
+            entry.put("path", query != null ? request.getPath() + "?" + query : request.getPath());
+
+            Map<String, String> selected = new LinkedHashMap<>();
+            request.getHeaders().forEach((name, value) -> {
+                if ((headers.contains("*") || headers.contains(name))
+                        && !name.equals("content-length") && !name.equals("host")) {
+                    selected.put(name, redactedHeaders.contains(name) ? REDACTED : value);
+                }
+            });
+            entry.put("headers", selected);
+
+            byte[] body = request.getBodyBytes();
+            if (body.length > 0) {
+                if (body.length <= maxBodyBytes && isText(request.getContentType())) {
+                    entry.put("body", request.getBody());
+                } else {
+                    entry.put("bodyOmittedBytes", body.length);
+                }
+            }
+            entry.put("offsetMs", Math.max(0, arrivedAt - epochNanos) / 1_000 / 1_000.0);
+            entry.put("status", status);
+            entry.put("latencyMs", latencyNanos / 1_000 / 1_000.0);
+            return entry;
+        }
+    }
+}
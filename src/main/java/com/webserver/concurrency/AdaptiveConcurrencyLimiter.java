@@ -0,0 +1,103 @@
+package com.webserver.concurrency;
+
+import com.webserver.metrics.MetricsCollector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of requests in flight at a limit derived from measured latency, using
+ * the gradient algorithm: a slow-moving average of request latency is the baseline, and
+ * each sample scales the limit by {@code baseline / sample}. While latency stays near the
+ * baseline the limit grows by roughly its square root per sample; once requests start
+ * queueing behind each other latency rises and the limit shrinks toward what the server
+ * can actually run concurrently.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int BASELINE_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final MetricsCollector metrics = MetricsCollector.getInstance();
+
+    private volatile int limit;
+    // Guarded by this; only touched when a request completes
+    private double estimatedLimit;
+    private double baselineRtt;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        metrics.setConcurrencyLimit(limit);
+    }
+
+    /** Claims a slot, or returns false when the current limit is already in flight. */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                metrics.recordConcurrencyRejection();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                metrics.setConcurrencyInFlight(current + 1);
+                return true;
+            }
+        }
+    }
+
+    /** Returns a slot claimed by {@link #tryAcquire()} and feeds its latency to the limit. */
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        metrics.setConcurrencyInFlight(current - 1);
+        update(latencyNanos, current);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long latencyNanos, int inFlightAtCompletion) {
+        double rtt = Math.max(1, latencyNanos);
+        samples++;
+        if (samples <= WARMUP_SAMPLES) {
+            baselineRtt += (rtt - baselineRtt) / samples;
+            return;
+        }
+        baselineRtt += (rtt - baselineRtt) / BASELINE_WINDOW;
+
+        // After a latency spike the slow average stays inflated; decay it faster once
+        // samples are well below it so the limit is not grown against a stale baseline.
+        if (baselineRtt / rtt > 2) {
+            baselineRtt *= 0.95;
+        }
+
+        // An idle server says nothing about how much concurrency it can take
+        if (inFlightAtCompletion < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * baselineRtt / rtt));
+        double queueAllowance = Math.sqrt(estimatedLimit);
+        double target = estimatedLimit * gradient + queueAllowance;
+        estimatedLimit = (1 - SMOOTHING) * estimatedLimit + SMOOTHING * target;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+
+        int newLimit = (int) estimatedLimit;
+        if (newLimit != limit) {
+            limit = newLimit;
+            metrics.setConcurrencyLimit(newLimit);
+        }
+    }
+}
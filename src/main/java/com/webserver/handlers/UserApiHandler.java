@@ -2,80 +2,156 @@ package com.webserver.handlers;
 
 import com.webserver.Request;
 import com.webserver.Response;
+import com.webserver.logging.StructuredLogger;
 import com.webserver.model.User;
+import com.webserver.routing.RouteHandler;
+import com.webserver.routing.Router;
+import com.webserver.storage.DuplicateEmailException;
+import com.webserver.storage.UserPage;
+import com.webserver.storage.UserQuery;
+import com.webserver.storage.UserSort;
 import com.webserver.storage.UserStorage;
 import com.webserver.utils.JsonUtils;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public class UserApiHandler {
-    private final UserStorage userStorage = new UserStorage(); // Now using in-memory storage only
+    private static final StructuredLogger logger = new StructuredLogger(UserApiHandler.class);
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+    private static final byte[] CORS_HEADERS = Response.encodeHeaders(
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Methods", "GET, POST, PUT, DELETE",
+            "Access-Control-Allow-Headers", "Content-Type");
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 1000;
+    private static final String[] LIST_PARAMETERS =
+            {"limit", "cursor", "sort", "email", "minAge", "maxAge", "createdAfter"};
 
-    public Response handleUserApi(Request request) {
-        String path = request.getPath();
-        String method = request.getMethod();
+    private final UserStorage userStorage = new UserStorage(); // Now using in-memory storage only
 
-        System.out.println("🎯 User API: " + method + " " + path);
+    public void registerRoutes(Router router) {
+        router.get("/api/users", jsonErrors(this::handleListUsers))
+                .post("/api/users", jsonErrors(this::handleCreateUser))
+                .get("/api/users/{id:long}", jsonErrors(this::handleGetUser))
+                .put("/api/users/{id:long}", jsonErrors(this::handleUpdateUser))
+                .delete("/api/users/{id:long}", jsonErrors(this::handleDeleteUser))
+                .fallback("/api/users/*", request -> createJsonResponse(400, JsonUtils.createErrorJson(
+                        "Invalid endpoint", "Use /api/users or /api/users/{id}")))
+                .methodNotAllowed("/api/users/*", allow -> createJsonResponse(405, JsonUtils.createErrorJson(
+                        "Method not allowed", "Supported methods: " + allow)));
+    }
 
-        try {
-            return switch (method.toUpperCase()) {
-                case "GET" -> handleGetUsers(request);
-                case "POST" -> handleCreateUser(request);
-                case "PUT" -> handleUpdateUser(request);
-                case "DELETE" -> handleDeleteUser(request);
-                default -> createJsonResponse(405, JsonUtils.createErrorJson(
-                        "Method not allowed", "Supported methods: GET, POST, PUT, DELETE"));
-            };
-        } catch (Exception e) {
-            System.err.println("❌ Error in User API: " + e.getMessage());
-            return createJsonResponse(500, JsonUtils.createErrorJson(
-                    "Internal server error", e.getMessage()));
-        }
+    private RouteHandler jsonErrors(RouteHandler handler) {
+        return request -> {
+            logger.debug("User API: {} {}", request.getMethod(), request.getPath());
+            try {
+                return handler.handle(request);
+            } catch (Exception e) {
+                logger.logError("user api", String.valueOf(e.getMessage()), e);
+                return createJsonResponse(500, JsonUtils.createErrorJson(
+                        "Internal server error", e.getMessage()));
+            }
+        };
     }
 
-    private Response handleGetUsers(Request request) {
-        String path = request.getPath();
+    // GET /api/users - List users a page at a time with ?limit=, ?cursor= and
+    // ?sort=id|createdAt|age, optionally filtered by ?email=, ?minAge=, ?maxAge= and
+    // ?createdAfter=; without any of them all users are streamed so large lists start
+    // sending at once
+    private Response handleListUsers(Request request) {
+        boolean paged = false;
+        for (String parameter : LIST_PARAMETERS) {
+            paged |= request.getQueryParameter(parameter) != null;
+        }
+        if (paged) {
+            return handleListUsersPage(request);
+        }
 
-        if (path.equals("/api/users")) {
-            // GET /api/users - List all users
-            List<User> users = userStorage.getAllUsers();
-            String json = JsonUtils.createSuccessJson("Users retrieved successfully", users);
-            return createJsonResponse(200, json);
+        Collection<User> users = userStorage.getUsersView();
+        Response response = createJsonResponse(200, "");
+        response.setStreamingBody(out -> JsonUtils.writeSuccessJson(out, "Users retrieved successfully", users),
+                JSON_CONTENT_TYPE);
+        return response;
+    }
 
-        } else if (path.matches("/api/users/\\d+")) {
-            // GET /api/users/{id} - Get specific user
-            Long userId = extractIdFromPath(path);
-            Optional<User> user = userStorage.getUserById(userId);
+    private Response handleListUsersPage(Request request) {
+        UserPage page;
+        try {
+            String limitParameter = request.getQueryParameter("limit");
+            int limit = limitParameter != null ? Integer.parseInt(limitParameter) : DEFAULT_PAGE_LIMIT;
+            if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_LIMIT);
+            }
 
-            if (user.isPresent()) {
-                String json = JsonUtils.createSuccessJson("User found", user.get());
-                return createJsonResponse(200, json);
-            } else {
-                String json = JsonUtils.createErrorJson("User not found", "No user with ID: " + userId);
-                return createJsonResponse(404, json);
+            UserQuery query = new UserQuery();
+            String sort = request.getQueryParameter("sort");
+            if (sort != null) {
+                query.sortBy(UserSort.fromParameter(sort));
+            }
+            String minAge = request.getQueryParameter("minAge");
+            String maxAge = request.getQueryParameter("maxAge");
+            if (minAge != null || maxAge != null) {
+                query.ageBetween(minAge != null ? Integer.parseInt(minAge) : Integer.MIN_VALUE,
+                        maxAge != null ? Integer.parseInt(maxAge) : Integer.MAX_VALUE);
+            }
+            String createdAfter = request.getQueryParameter("createdAfter");
+            if (createdAfter != null) {
+                query.createdAfter(parseTimestamp(createdAfter));
             }
+            String email = request.getQueryParameter("email");
+            String cursor = request.getQueryParameter("cursor");
+            page = email != null
+                    ? userStorage.findUsersByEmail(email, query, cursor)
+                    : userStorage.findUsers(query, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            String json = JsonUtils.createErrorJson("Invalid query parameters", e.getMessage());
+            return createJsonResponse(400, json);
+        }
+        String json = JsonUtils.createPageJson("Users retrieved successfully", page.getUsers(), page.getNextCursor());
+        return createJsonResponse(200, json);
+    }
+
+    // Epoch milliseconds or an ISO-8601 instant such as 2024-01-31T12:00:00Z
+    private static long parseTimestamp(String value) {
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(value);
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("createdAfter must be epoch milliseconds or an ISO-8601 instant");
         }
+    }
+
+    // GET /api/users/{id} - Get specific user
+    private Response handleGetUser(Request request) {
+        long userId = request.getPathParameters().getLong("id");
+        Optional<User> user = userStorage.getUserById(userId);
 
-        String json = JsonUtils.createErrorJson("Invalid endpoint", "Use /api/users or /api/users/{id}");
-        return createJsonResponse(400, json);
+        if (user.isPresent()) {
+            String json = JsonUtils.createSuccessJson("User found", user.get());
+            return createJsonResponse(200, json);
+        } else {
+            String json = JsonUtils.createErrorJson("User not found", "No user with ID: " + userId);
+            return createJsonResponse(404, json);
+        }
     }
 
-    // In your UserApiHandler.java, update the handleCreateUser method:
+    // POST /api/users - Create user
     private Response handleCreateUser(Request request) {
-        System.out.println("🔍 POST Request Debug:");
-        System.out.println("  Content-Type: '" + request.getContentType() + "'");
-        System.out.println("  Is JSON Request: " + request.isJsonRequest());
-        System.out.println("  Body Length: " + request.getBody().length());
-        System.out.println("  Body Content: '" + request.getBody() + "'");
+        logger.debug("Create user: content-type '{}', {} body chars", request.getContentType(), request.getBody().length());
 
         if (!request.isJsonRequest()) {
             String error = String.format(
                     "Invalid content type. Expected 'application/json', got '%s'",
                     request.getContentType()
             );
-            System.out.println("❌ " + error);
+            logger.debug("Rejected create user: {}", error);
             String json = JsonUtils.createErrorJson("Invalid content type", error);
             return createJsonResponse(400, json);
         }
@@ -99,8 +175,10 @@ public class UserApiHandler {
             String json = JsonUtils.createSuccessJson("User created successfully", createdUser);
             return createJsonResponse(201, json);
 
+        } catch (DuplicateEmailException e) {
+            return createJsonResponse(409, JsonUtils.createErrorJson("Email already in use", e.getMessage()));
         } catch (RuntimeException e) {
-            System.out.println("❌ JSON parsing error: " + e.getMessage());
+            logger.debug("Rejected create user: {}", e.getMessage());
             String json = JsonUtils.createErrorJson("Invalid JSON", e.getMessage());
             return createJsonResponse(400, json);
         }
@@ -108,20 +186,13 @@ public class UserApiHandler {
 
 
     private Response handleUpdateUser(Request request) {
-        String path = request.getPath();
-
-        if (!path.matches("/api/users/\\d+")) {
-            String json = JsonUtils.createErrorJson("Invalid endpoint", "Use /api/users/{id}");
-            return createJsonResponse(400, json);
-        }
-
         if (!request.isJsonRequest()) {
             String json = JsonUtils.createErrorJson("Invalid content type", "Expected application/json");
             return createJsonResponse(400, json);
         }
 
         try {
-            Long userId = extractIdFromPath(path);
+            long userId = request.getPathParameters().getLong("id");
             User user = JsonUtils.fromJson(request.getBody(), User.class);
 
             // Validate user
@@ -140,6 +211,8 @@ public class UserApiHandler {
                 return createJsonResponse(404, json);
             }
 
+        } catch (DuplicateEmailException e) {
+            return createJsonResponse(409, JsonUtils.createErrorJson("Email already in use", e.getMessage()));
         } catch (RuntimeException e) {
             String json = JsonUtils.createErrorJson("Invalid JSON", e.getMessage());
             return createJsonResponse(400, json);
@@ -147,14 +220,7 @@ public class UserApiHandler {
     }
 
     private Response handleDeleteUser(Request request) {
-        String path = request.getPath();
-
-        if (!path.matches("/api/users/\\d+")) {
-            String json = JsonUtils.createErrorJson("Invalid endpoint", "Use /api/users/{id}");
-            return createJsonResponse(400, json);
-        }
-
-        Long userId = extractIdFromPath(path);
+        long userId = request.getPathParameters().getLong("id");
         boolean deleted = userStorage.deleteUser(userId);
 
         if (deleted) {
@@ -182,17 +248,10 @@ public class UserApiHandler {
         return errors;
     }
 
-    private Long extractIdFromPath(String path) {
-        String[] parts = path.split("/");
-        return Long.parseLong(parts[parts.length - 1]);
-    }
-
     private Response createJsonResponse(int statusCode, String json) {
         Response response = new Response(statusCode, json);
-        response.addHeader("Content-Type", "application/json; charset=UTF-8");
-        response.addHeader("Access-Control-Allow-Origin", "*");
-        response.addHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE");
-        response.addHeader("Access-Control-Allow-Headers", "Content-Type");
+        response.addHeader("Content-Type", JSON_CONTENT_TYPE);
+        response.addEncodedHeaders(CORS_HEADERS);
         return response;
     }
 
@@ -0,0 +1,194 @@
+package com.webserver.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Minimal blocking HTTP/1.1 client connection for the load generator. It sends a
+ * pre-encoded request, reads the response to its end (Content-Length, chunked or until
+ * close) and reconnects on the next exchange whenever either side closed the connection.
+ */
+class HttpClientConnection implements AutoCloseable {
+    private static final int MAX_HEAD_BYTES = 64 * 1024;
+
+    private final InetSocketAddress address;
+    private final int timeoutMs;
+    private final byte[] discard = new byte[16 * 1024];
+    private final StringBuilder line = new StringBuilder(128);
+    private Socket socket;
+    private InputStream input;
+    private OutputStream output;
+
+    HttpClientConnection(InetSocketAddress address, int timeoutMs) {
+        this.address = address;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /** Sends the request and returns the response status once the whole response is read. */
+    int exchange(byte[] request, boolean headRequest) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+        try {
+            output.write(request);
+            output.flush();
+            return readResponse(headRequest);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket newSocket = new Socket();
+        try {
+            newSocket.setTcpNoDelay(true);
+            newSocket.connect(address, timeoutMs);
+            newSocket.setSoTimeout(timeoutMs);
+        } catch (IOException e) {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+        input = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+        output = socket.getOutputStream();
+    }
+
+    private int readResponse(boolean headRequest) throws IOException {
+        String statusLine = readLine();
+        int status = parseStatus(statusLine);
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean close = statusLine.startsWith("HTTP/1.0");
+
+        int headBytes = statusLine.length();
+        String header;
+        while (!(header = readLine()).isEmpty()) {
+            headBytes += header.length();
+            if (headBytes > MAX_HEAD_BYTES) {
+                throw new IOException("Response headers exceed " + MAX_HEAD_BYTES + " bytes");
+            }
+            int colon = header.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim();
+            String value = header.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("content-length")) {
+                contentLength = parseLength(value, 10);
+            } else if (name.equalsIgnoreCase("transfer-encoding")) {
+                chunked = value.toLowerCase().contains("chunked");
+            } else if (name.equalsIgnoreCase("connection")) {
+                close = value.equalsIgnoreCase("close");
+            }
+        }
+
+        if (headRequest || status == 204 || status == 304 || status < 200) {
+            // No body
+        } else if (chunked) {
+            readChunkedBody();
+        } else if (contentLength >= 0) {
+            skip(contentLength);
+        } else {
+            // Close-delimited body
+            while (input.read(discard) != -1) {
+                // Read to the end of the stream
+            }
+            close = true;
+        }
+
+        if (close) {
+            close();
+        }
+        return status;
+    }
+
+    private void readChunkedBody() throws IOException {
+        while (true) {
+            String sizeLine = readLine();
+            int extension = sizeLine.indexOf(';');
+            long size = parseLength((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+            if (size == 0) {
+                // Trailer section ends with an empty line
+                while (!readLine().isEmpty()) {
+                    // Ignore trailers
+                }
+                return;
+            }
+            skip(size);
+            readLine();
+        }
+    }
+
+    private void skip(long count) throws IOException {
+        while (count > 0) {
+            int read = input.read(discard, 0, (int) Math.min(discard.length, count));
+            if (read == -1) {
+                throw new EOFException("Connection closed in the middle of a response body");
+            }
+            count -= read;
+        }
+    }
+
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed before the response was complete");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+            if (line.length() > MAX_HEAD_BYTES) {
+                throw new IOException("Response line exceeds " + MAX_HEAD_BYTES + " bytes");
+            }
+        }
+        return line.toString();
+    }
+
+    // A malformed length is a broken response like any other: it resets the connection and
+    // counts as an I/O error instead of escaping the worker as a NumberFormatException
+    private static long parseLength(String value, int radix) throws IOException {
+        try {
+            long length = Long.parseLong(value, radix);
+            if (length >= 0) {
+                return length;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Malformed " + (radix == 16 ? "chunk size" : "Content-Length") + ": " + value);
+    }
+
+    private static int parseStatus(String statusLine) throws IOException {
+        // HTTP/1.1 200 OK
+        if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already broken; a new connection is opened on the next exchange
+            }
+            socket = null;
+            input = null;
+            output = null;
+        }
+    }
+}
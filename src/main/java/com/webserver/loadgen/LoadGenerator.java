@@ -0,0 +1,302 @@
+package com.webserver.loadgen;
+
+import com.webserver.MultiThreadedServer;
+import com.webserver.WebServer;
+import com.webserver.metrics.LatencyHistogram;
+import com.webserver.nio.NioServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a JSONL request log against a server and reports throughput, error rate and
+ * latency percentiles.
+ *
+ * <p>With {@code --rate} the load is open-loop: request {@code n} is due at
+ * {@code start + n / rate} whether or not earlier requests have completed, and its
+ * latency is measured from that due time. A stalled server therefore shows up in the
+ * percentiles instead of silently lowering the offered load (coordinated omission).
+ * Without {@code --rate} each of {@code --concurrency} connections sends its next request
+ * as soon as the previous response arrives. Without {@code --target} a server is started
+ * in-process on an ephemeral port.
+ *
+ * <pre>
+ * java -cp target/classes:... com.webserver.loadgen.LoadGenerator \
+ *     --requests load.jsonl --rate 2000 --concurrency 32 --duration 30 --server nio
+ * </pre>
+ */
+public class LoadGenerator {
+    private static final int SOCKET_TIMEOUT_MS = 10_000;
+    private static final long SERVER_START_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final List<LoadRequest> requests;
+    private final byte[][] encoded;
+    private final boolean[] headRequests;
+    private final InetSocketAddress address;
+    private final int concurrency;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    private final LatencyHistogram corrected = new LatencyHistogram();
+    private final LatencyHistogram uncorrected = new LatencyHistogram();
+    private final LongAdder[] statusClasses = new LongAdder[6];
+    private final LongAdder ioErrors = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private long startedAt;
+    private long measureFrom;
+    private long endAt;
+
+    public LoadGenerator(List<LoadRequest> requests, InetSocketAddress address, boolean keepAlive,
+                         int concurrency, double rate, long warmupNanos, long durationNanos) {
+        this.requests = requests;
+        this.address = address;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+
+        String host = address.getHostString() + ":" + address.getPort();
+        this.encoded = new byte[requests.size()][];
+        this.headRequests = new boolean[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            encoded[i] = requests.get(i).encode(host, keepAlive);
+            headRequests[i] = requests.get(i).getMethod().equals("HEAD");
+        }
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            printUsage();
+            return;
+        }
+
+        // An in-process server would otherwise log every request it serves
+        if (!options.containsKey("target")) {
+            System.setProperty("server.logging.sample-rate.info",
+                    System.getProperty("server.logging.sample-rate.info", "0"));
+            System.setProperty("server.logging.sample-rate.debug",
+                    System.getProperty("server.logging.sample-rate.debug", "0"));
+        }
+
+        List<LoadRequest> requests;
+        int concurrency;
+        double rate;
+        long warmupNanos;
+        long durationNanos;
+        int serverThreads;
+        try {
+            requests = options.containsKey("requests")
+                    ? LoadRequest.readJsonl(Path.of(options.get("requests")))
+                    : List.of(new LoadRequest("GET", "/health", Map.of(), new byte[0]));
+            concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+            rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+            warmupNanos = secondsToNanos(options.getOrDefault("warmup", "2"));
+            durationNanos = secondsToNanos(options.getOrDefault("duration", "10"));
+            serverThreads = Integer.parseInt(options.getOrDefault("server-threads", "50"));
+            if (concurrency < 1 || rate < 0 || durationNanos <= 0 || warmupNanos < 0 || serverThreads < 1) {
+                throw new IllegalArgumentException("Counts and durations must be positive");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            return;
+        }
+
+        String mode = options.getOrDefault("server", "threaded").toLowerCase();
+        if (!mode.equals("threaded") && !mode.equals("nio")) {
+            System.err.println("❌ Invalid server mode: " + mode + " (expected 'threaded' or 'nio')");
+            return;
+        }
+
+        WebServer server = null;
+        InetSocketAddress address;
+        if (options.containsKey("target")) {
+            String target = options.get("target");
+            int colon = target.lastIndexOf(':');
+            try {
+                address = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+            } catch (RuntimeException e) {
+                System.err.println("❌ Invalid target: " + target + " (expected host:port)");
+                return;
+            }
+        } else {
+            server = mode.equals("nio")
+                    ? new NioServer(0, serverThreads, Runtime.getRuntime().availableProcessors())
+                    : new MultiThreadedServer(0, serverThreads);
+            address = new InetSocketAddress("127.0.0.1", startInProcess(server));
+        }
+
+        try {
+            LoadGenerator generator = new LoadGenerator(requests, address, !options.containsKey("no-keepalive"),
+                    concurrency, rate, warmupNanos, durationNanos);
+            System.out.println("🚀 Load: " + (rate > 0 ? String.format("open loop at %.0f req/s", rate) : "closed loop")
+                    + " over " + concurrency + " connections to " + address.getHostString() + ":" + address.getPort()
+                    + (server != null ? " (in-process " + mode + " server)" : ""));
+            generator.run();
+            generator.printReport();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /** Runs the warmup and the measured period, then returns once every worker has stopped. */
+    public void run() throws InterruptedException {
+        startedAt = System.nanoTime();
+        measureFrom = startedAt + warmupNanos;
+        endAt = measureFrom + durationNanos;
+
+        List<Thread> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(rate > 0 ? this::runOpenLoop : this::runClosedLoop, "loadgen-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void runOpenLoop() {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        try (HttpClientConnection connection = new HttpClientConnection(address, SOCKET_TIMEOUT_MS)) {
+            while (true) {
+                long seq = sequence.getAndIncrement();
+                long intended = startedAt + (long) (seq * intervalNanos);
+                if (intended >= endAt) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                send(connection, (int) (seq % encoded.length), intended);
+            }
+        }
+    }
+
+    private void runClosedLoop() {
+        try (HttpClientConnection connection = new HttpClientConnection(address, SOCKET_TIMEOUT_MS)) {
+            long sentAt;
+            while ((sentAt = System.nanoTime()) < endAt) {
+                send(connection, (int) (sequence.getAndIncrement() % encoded.length), sentAt);
+            }
+        }
+    }
+
+    private void send(HttpClientConnection connection, int index, long intendedAt) {
+        long sentAt = System.nanoTime();
+        int status;
+        try {
+            status = connection.exchange(encoded[index], headRequests[index]);
+        } catch (IOException e) {
+            status = -1;
+        }
+        long doneAt = System.nanoTime();
+        if (intendedAt < measureFrom) {
+            return;
+        }
+        if (status < 0) {
+            ioErrors.increment();
+        } else {
+            statusClasses[Math.min(5, status / 100)].increment();
+        }
+        corrected.record(doneAt - intendedAt);
+        uncorrected.record(doneAt - sentAt);
+    }
+
+    public void printReport() {
+        long total = corrected.getCount();
+        long serverErrors = statusClasses[5].sum();
+        long failures = serverErrors + ioErrors.sum();
+        double seconds = durationNanos / 1e9;
+
+        System.out.println("📊 Load test results (" + requests.size() + " distinct requests, "
+                + String.format("%.1f", seconds) + "s measured after " + String.format("%.1f", warmupNanos / 1e9)
+                + "s warmup)");
+        System.out.printf("   Requests:   %d (%.1f req/s)%n", total, total / seconds);
+        System.out.printf("   Responses:  2xx=%d 3xx=%d 4xx=%d 5xx=%d, I/O errors=%d%n",
+                statusClasses[2].sum(), statusClasses[3].sum(), statusClasses[4].sum(), serverErrors, ioErrors.sum());
+        System.out.printf("   Error rate: %.3f%% (5xx and I/O errors)%n", total == 0 ? 0.0 : 100.0 * failures / total);
+        if (rate > 0) {
+            printLatencies("Latency from intended send time (corrected)", corrected);
+            printLatencies("Latency from actual send time (uncorrected)", uncorrected);
+        } else {
+            printLatencies("Latency (closed loop, no offered rate to correct against)", uncorrected);
+        }
+    }
+
+    private static void printLatencies(String title, LatencyHistogram histogram) {
+        StringBuilder line = new StringBuilder("   ").append(title).append(":\n     ");
+        for (double percentile : PERCENTILES) {
+            line.append(String.format("p%s=%.3fms  ", percentile % 1 == 0 ? String.valueOf((int) percentile)
+                    : String.valueOf(percentile), histogram.getValueAtPercentile(percentile) / 1e6));
+        }
+        line.append(String.format("max=%.3fms", histogram.getMax() / 1e6));
+        System.out.println(line);
+    }
+
+    private static int startInProcess(WebServer server) throws InterruptedException {
+        Thread serverThread = new Thread(server::start, "loadgen-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        long deadline = System.nanoTime() + SERVER_START_TIMEOUT_NANOS;
+        int port;
+        while ((port = server.getPort()) == 0) {
+            if (!serverThread.isAlive() || System.nanoTime() > deadline) {
+                throw new IllegalStateException("In-process server did not start");
+            }
+            Thread.sleep(10);
+        }
+        return port;
+    }
+
+    private static long secondsToNanos(String seconds) {
+        return (long) (Double.parseDouble(seconds) * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    // Flags are "--name value", except the boolean --no-keepalive
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || args[i].equals("--help")) {
+                return null;
+            }
+            String name = args[i].substring(2);
+            if (name.equals("no-keepalive")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                System.err.println("❌ Missing value for --" + name);
+                return null;
+            }
+        }
+        return options;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: LoadGenerator [--requests file.jsonl] [--target host:port]");
+        System.out.println("         [--rate req/s] [--concurrency N] [--duration s] [--warmup s] [--no-keepalive]");
+        System.out.println("         [--server threaded|nio] [--server-threads N]");
+        System.out.println("  Without --rate the load is closed-loop; without --target a server is started in-process.");
+    }
+}
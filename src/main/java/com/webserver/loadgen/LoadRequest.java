@@ -0,0 +1,103 @@
+package com.webserver.loadgen;
+
+import com.webserver.utils.JsonUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request to replay, read from a JSONL line such as
+ * {@code {"method":"POST","path":"/api/users","headers":{"Content-Type":"application/json"},"body":{"name":"Ada"}}}.
+ * Only {@code path} is required; a body that is not a string is sent as JSON.
+ */
+public class LoadRequest {
+    private final String method;
+    private final String path;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    public LoadRequest(String method, String path, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /** Reads one request per non-blank line; lines starting with '#' are comments. */
+    public static List<LoadRequest> readJsonl(Path file) throws IOException {
+        List<LoadRequest> requests = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                requests.add(fromMap(JsonUtils.fromJson(trimmed, Map.class)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException(file + " contains no requests");
+        }
+        return requests;
+    }
+
+    private static LoadRequest fromMap(Map<?, ?> entry) {
+        Object path = entry.get("path");
+        if (!(path instanceof String p) || !p.startsWith("/")) {
+            throw new IllegalArgumentException("\"path\" must be a string starting with '/'");
+        }
+        Object method = entry.get("method");
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (entry.get("headers") instanceof Map<?, ?> map) {
+            map.forEach((name, value) -> headers.put(String.valueOf(name), String.valueOf(value)));
+        }
+        Object body = entry.get("body");
+        byte[] bodyBytes = body == null ? new byte[0]
+                : (body instanceof String text ? text : JsonUtils.toCompactJson(body)).getBytes(StandardCharsets.UTF_8);
+        return new LoadRequest(method != null ? method.toString().toUpperCase() : "GET", p, headers, bodyBytes);
+    }
+
+    /** The request as it goes on the wire, with Host, Content-Length and Connection filled in. */
+    public byte[] encode(String host, boolean keepAlive) {
+        StringBuilder head = new StringBuilder(128);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(host).append("\r\n");
+        headers.forEach((name, value) -> {
+            String lower = name.toLowerCase();
+            if (!lower.equals("host") && !lower.equals("content-length") && !lower.equals("connection")) {
+                head.append(name).append(": ").append(value).append("\r\n");
+            }
+        });
+        if (body.length > 0) {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] encoded = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, encoded, 0, headBytes.length);
+        System.arraycopy(body, 0, encoded, headBytes.length, body.length);
+        return encoded;
+    }
+}
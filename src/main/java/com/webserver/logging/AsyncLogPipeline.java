@@ -0,0 +1,152 @@
+package com.webserver.logging;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.webserver.ServerConfig;
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.utils.RingBufferWriter;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves log output off request threads. {@link StructuredLogger} captures each event,
+ * still unformatted, into a lock-free ring buffer; one writer thread drains it in batches
+ * and hands the events to the logback appenders with their original timestamp, thread
+ * and fields. When the buffer is full the event is dropped and counted rather than
+ * blocking the caller. Per-level sample rates thin out chatty levels before they are queued.
+ */
+public final class AsyncLogPipeline {
+    private static final String FQCN = StructuredLogger.class.getName();
+    private static final int BATCH_SIZE = 256;
+
+    static {
+        // Without this logback looks for logback.xml and ignores the logstash configuration
+        if (System.getProperty("logback.configurationFile") == null
+                && AsyncLogPipeline.class.getResource("/logback-spring.xml") != null) {
+            System.setProperty("logback.configurationFile", "logback-spring.xml");
+        }
+    }
+
+    private static class Holder {
+        private static final AsyncLogPipeline INSTANCE = new AsyncLogPipeline();
+    }
+
+    private final RingBufferWriter<Event> writer;
+    // Indexed by Level.ordinal(): ERROR, WARN, INFO, DEBUG, TRACE
+    private final double[] sampleRates = new double[Level.values().length];
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private AsyncLogPipeline() {
+        ServerConfig config = ServerConfig.getInstance();
+        int capacity = Integer.highestOneBit(Math.max(2, config.getInt("server.logging.buffer-size", 8192)));
+        for (Level level : Level.values()) {
+            String key = "server.logging.sample-rate." + level.name().toLowerCase();
+            sampleRates[level.ordinal()] = Double.parseDouble(config.getString(key, "1.0"));
+        }
+
+        this.writer = new RingBufferWriter<>("log-writer", capacity, BATCH_SIZE, this::write, () -> { });
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> writer.flush(2, TimeUnit.SECONDS), "log-flush"));
+    }
+
+    public static AsyncLogPipeline getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /** Returns false when the event was sampled out or dropped because the buffer was full. */
+    boolean publish(Logger logger, Level level, String message, Object[] args, String[] fields) {
+        double rate = sampleRates[level.ordinal()];
+        if (rate < 1.0 && (rate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= rate)) {
+            MetricsCollector.getInstance().recordLogDropped("sampled");
+            return false;
+        }
+        Event event = new Event(logger, level, message, args, fields,
+                System.currentTimeMillis(), Thread.currentThread().getName());
+        if (!writer.offer(event)) {
+            dropped.incrementAndGet();
+            MetricsCollector.getInstance().recordLogDropped("buffer_full");
+            return false;
+        }
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void write(Event event) {
+        try {
+            if (event.logger instanceof ch.qos.logback.classic.Logger logbackLogger) {
+                LoggingEvent loggingEvent = new LoggingEvent(FQCN, logbackLogger,
+                        ch.qos.logback.classic.Level.convertAnSLF4JLevel(event.level),
+                        event.message, null, event.args);
+                loggingEvent.setInstant(Instant.ofEpochMilli(event.timestamp));
+                loggingEvent.setThreadName(event.threadName);
+                loggingEvent.setMDCPropertyMap(event.fieldMap());
+                logbackLogger.callAppenders(loggingEvent);
+            } else {
+                writeThroughSlf4j(event);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("❌ [log-writer] Failed to write log event: " + e);
+        }
+    }
+
+    private void writeThroughSlf4j(Event event) {
+        Map<String, String> fields = event.fieldMap();
+        fields.forEach(MDC::put);
+        try {
+            LoggingEventBuilder builder = event.logger.atLevel(event.level).setMessage(event.message);
+            if (event.args != null) {
+                for (Object arg : event.args) {
+                    builder = arg instanceof Throwable t ? builder.setCause(t) : builder.addArgument(arg);
+                }
+            }
+            builder.log();
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static final class Event {
+        private final Logger logger;
+        private final Level level;
+        private final String message;
+        private final Object[] args;
+        private final String[] fields;
+        private final long timestamp;
+        private final String threadName;
+
+        private Event(Logger logger, Level level, String message, Object[] args, String[] fields,
+                      long timestamp, String threadName) {
+            this.logger = logger;
+            this.level = level;
+            this.message = message;
+            this.args = args;
+            this.fields = fields;
+            this.timestamp = timestamp;
+            this.threadName = threadName;
+        }
+
+        private Map<String, String> fieldMap() {
+            if (fields == null || fields.length == 0) {
+                return new HashMap<>(2);
+            }
+            Map<String, String> map = new HashMap<>(fields.length);
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                if (fields[i + 1] != null) {
+                    map.put(fields[i], fields[i + 1]);
+                }
+            }
+            return map;
+        }
+    }
+}
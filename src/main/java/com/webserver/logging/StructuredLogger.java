@@ -2,50 +2,83 @@ package com.webserver.logging;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
+import org.slf4j.event.Level;
 
+/**
+ * Logging facade for request paths. Calls return as soon as the event is queued on the
+ * {@link AsyncLogPipeline}; messages use SLF4J {@code {}} placeholders and are only
+ * formatted by the writer thread. Structured fields become MDC entries in the JSON output.
+ */
 public class StructuredLogger {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final AsyncLogPipeline pipeline;
     private final Logger logger;
 
     public StructuredLogger(Class<?> clazz) {
+        // The pipeline selects the logback configuration, so it must load before the first logger
+        this.pipeline = AsyncLogPipeline.getInstance();
         this.logger = LoggerFactory.getLogger(clazz);
     }
 
-    public void logHttpRequest(String method, String path, int status, long duration, String userAgent, String ip) {
-        MDC.put("http.method", method);
-        MDC.put("http.path", path);
-        MDC.put("http.status", String.valueOf(status));
-        MDC.put("http.duration", String.valueOf(duration));
-        MDC.put("http.user_agent", userAgent);
-        MDC.put("http.remote_ip", ip);
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
 
-        logger.info("HTTP Request processed: {} {} -> {} ({}ms)", method, path, status, duration);
-        MDC.clear();
+    public void debug(String message, Object... args) {
+        log(Level.DEBUG, null, message, args);
     }
 
-    public void logUserOperation(String operation, String userId, String status) {
-        MDC.put("user.operation", operation);
-        MDC.put("user.id", userId);
-        MDC.put("operation.status", status);
+    public void info(String message, Object... args) {
+        log(Level.INFO, null, message, args);
+    }
 
-        logger.info("User operation: {} for user {} - {}", operation, userId, status);
-        MDC.clear();
+    public void warn(String message, Object... args) {
+        log(Level.WARN, null, message, args);
     }
 
-    public void logCacheOperation(String operation, String key, String result) {
-        MDC.put("cache.operation", operation);
-        MDC.put("cache.key", key);
-        MDC.put("cache.result", result);
+    /** A trailing Throwable argument is logged with its stack trace. */
+    public void error(String message, Object... args) {
+        log(Level.ERROR, null, message, args);
+    }
 
-        logger.debug("Cache operation: {} on key {} -> {}", operation, key, result);
-        MDC.clear();
+    public void logHttpRequest(String method, String path, int status, long duration, String userAgent, String ip) {
+        log(Level.INFO, new String[]{
+                "http.method", method,
+                "http.path", path,
+                "http.status", String.valueOf(status),
+                "http.duration", String.valueOf(duration),
+                "http.user_agent", userAgent,
+                "http.remote_ip", ip
+        }, "HTTP Request processed: {} {} -> {} ({}ms)", method, path, status, duration);
+    }
+
+    public void logUserOperation(String operation, String userId, String status) {
+        log(Level.INFO, new String[]{
+                "user.operation", operation,
+                "user.id", userId,
+                "operation.status", status
+        }, "User operation: {} for user {} - {}", operation, userId, status);
+    }
+
+    public void logCacheOperation(String operation, String key, String result) {
+        log(Level.DEBUG, new String[]{
+                "cache.operation", operation,
+                "cache.key", key,
+                "cache.result", result
+        }, "Cache operation: {} on key {} -> {}", operation, key, result);
     }
 
     public void logError(String operation, String error, Exception e) {
-        MDC.put("error.operation", operation);
-        MDC.put("error.message", error);
+        log(Level.ERROR, new String[]{
+                "error.operation", operation,
+                "error.message", error
+        }, "Error in {}: {}", operation, error, e);
+    }
 
-        logger.error("Error in {}: {}", operation, error, e);
-        MDC.clear();
+    private void log(Level level, String[] fields, String message, Object... args) {
+        if (logger.isEnabledForLevel(level)) {
+            pipeline.publish(logger, level, message, args != null ? args : NO_ARGS, fields);
+        }
     }
 }
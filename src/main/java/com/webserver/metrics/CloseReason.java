@@ -0,0 +1,21 @@
+package com.webserver.metrics;
+
+/** Which side ended a client connection, as reported on connections_closed_total. */
+public enum CloseReason {
+    /** The client closed the connection between requests. */
+    CLIENT("client"),
+    /** The server closed it: Connection: close, request limit, timeout, bad request or shutdown. */
+    SERVER("server"),
+    /** A read or write failed, or the client went away in the middle of an exchange. */
+    ERROR("error");
+
+    private final String label;
+
+    CloseReason(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
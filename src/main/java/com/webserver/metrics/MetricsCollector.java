@@ -3,13 +3,50 @@ package com.webserver.metrics;
 import io.prometheus.client.*;
 import io.prometheus.client.hotspot.DefaultExports;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class MetricsCollector {
-    private static MetricsCollector INSTANCE = null;
-    private static boolean initialized = false;
+    /** Endpoint label for requests that did not match any route. */
+    public static final String UNMATCHED_ROUTE = "unmatched";
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"};
+    private static final String OTHER_METHOD = "OTHER";
+    /** Longest window, in minutes, kept by the per-route latency histograms. */
+    public static final int LATENCY_WINDOW_MINUTES = 15;
+
+    private static class Holder {
+        private static final MetricsCollector INSTANCE = new MetricsCollector();
+    }
+
+    // Label children per route template, resolved once so recording a request is a map
+    // lookup and two array reads instead of a label-tuple hash per metric
+    private final ConcurrentHashMap<String, RouteSeries[]> routeSeries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RollingLatencyHistogram> routeLatency = new ConcurrentHashMap<>();
 
     private final Counter httpRequestsTotal;
     private final Histogram httpRequestDuration;
+    private final Histogram httpRequestStageDuration;
     private final Gauge activeConnections;
+    private final Counter connectionsOpened;
+    private final Counter.Child[] connectionsClosed;
+    private final Histogram connectionDuration;
+    private final Histogram requestsPerConnection;
+    private final Counter staticCacheHits;
+    private final Counter staticCacheMisses;
+    private final Counter staticCacheEvictions;
+    private final Gauge staticCacheBytes;
+    private final Counter compressionBytesSaved;
+    private final Histogram compressionDuration;
+    private final Histogram workQueueWait;
+    private final Counter requestsShed;
+    private final Gauge concurrencyLimit;
+    private final Gauge concurrencyInFlight;
+    private final Counter concurrencyRejections;
+    private final Counter connectionTimeouts;
+    private final Counter logEventsDropped;
+    private final Counter trafficCaptured;
 
     private MetricsCollector() {
         httpRequestsTotal = Counter.build()
@@ -22,34 +59,287 @@ public class MetricsCollector {
                 .name("http_request_duration_seconds")
                 .help("HTTP request latency")
                 .labelNames("method", "endpoint")
+                .buckets(0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+                        0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+                .register();
+
+        httpRequestStageDuration = Histogram.build()
+                .name("http_request_stage_duration_seconds")
+                .help("Time requests spent in each stage: queue, headers, body, handler, serialize, write")
+                .labelNames("endpoint", "stage")
+                .buckets(0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005,
+                        0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
                 .register();
 
         activeConnections = Gauge.build()
                 .name("active_connections")
-                .help("Number of active connections")
+                .help("Number of open client connections")
                 .register();
 
-        if (!initialized) {
-            DefaultExports.initialize();
-            initialized = true;
+        connectionsOpened = Counter.build()
+                .name("connections_opened_total")
+                .help("Client connections accepted for serving; connections shed on accept are not counted")
+                .register();
+
+        Counter closed = Counter.build()
+                .name("connections_closed_total")
+                .help("Client connections closed, by which side ended them")
+                .labelNames("reason")
+                .register();
+        connectionsClosed = new Counter.Child[CloseReason.values().length];
+        for (CloseReason reason : CloseReason.values()) {
+            connectionsClosed[reason.ordinal()] = closed.labels(reason.getLabel());
         }
 
+        connectionDuration = Histogram.build()
+                .name("connection_duration_seconds")
+                .help("How long client connections stayed open")
+                .buckets(0.001, 0.01, 0.1, 0.5, 1, 5, 10, 30, 60, 300, 900, 3600)
+                .register();
+
+        requestsPerConnection = Histogram.build()
+                .name("http_requests_per_connection")
+                .help("Number of requests served over a single connection before it closed")
+                .buckets(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000)
+                .register();
+
+        staticCacheHits = Counter.build()
+                .name("static_cache_hits_total")
+                .help("Static asset cache hits")
+                .register();
+
+        staticCacheMisses = Counter.build()
+                .name("static_cache_misses_total")
+                .help("Static asset cache misses")
+                .register();
+
+        staticCacheEvictions = Counter.build()
+                .name("static_cache_evictions_total")
+                .help("Static assets evicted to stay within the cache size limit")
+                .register();
+
+        staticCacheBytes = Gauge.build()
+                .name("static_cache_bytes")
+                .help("Bytes of static content currently cached")
+                .register();
+
+        compressionBytesSaved = Counter.build()
+                .name("http_compression_bytes_saved_total")
+                .help("Response bytes saved by gzip content encoding")
+                .register();
+
+        compressionDuration = Histogram.build()
+                .name("http_compression_duration_seconds")
+                .help("Time spent gzipping response bodies")
+                .buckets(0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1)
+                .register();
+
+        workQueueWait = Histogram.build()
+                .name("thread_pool_queue_wait_seconds")
+                .help("Time tasks spent in the worker queue before a worker picked them up")
+                .buckets(0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+                .register();
+
+        requestsShed = Counter.build()
+                .name("http_requests_shed_total")
+                .help("Work rejected with 503 because the worker queue was full or its deadline passed")
+                .labelNames("reason")
+                .register();
+
+        concurrencyLimit = Gauge.build()
+                .name("concurrency_limit")
+                .help("Current adaptive limit on requests in flight")
+                .register();
+
+        concurrencyInFlight = Gauge.build()
+                .name("concurrency_inflight")
+                .help("Requests currently holding a concurrency limiter slot")
+                .register();
+
+        concurrencyRejections = Counter.build()
+                .name("concurrency_rejections_total")
+                .help("Requests rejected with 503 because the concurrency limit was reached")
+                .register();
+
+        connectionTimeouts = Counter.build()
+                .name("connection_timeouts_total")
+                .help("Connections closed because a read, write or idle deadline passed")
+                .labelNames("phase")
+                .register();
+
+        logEventsDropped = Counter.build()
+                .name("log_events_dropped_total")
+                .help("Log events not written: sampled out, or dropped because the log buffer was full")
+                .labelNames("reason")
+                .register();
+
+        trafficCaptured = Counter.build()
+                .name("traffic_capture_requests_total")
+                .help("Sampled requests for traffic capture: written, or dropped because the capture buffer was full")
+                .labelNames("result")
+                .register();
+
+        DefaultExports.initialize();
+
         System.out.println("📊 Prometheus metrics collector initialized");
     }
 
-    public static synchronized MetricsCollector getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new MetricsCollector();
+    public static MetricsCollector getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Records a request under its route template, so the endpoint label stays bounded by
+     * the routes the server registers. A null route counts as {@link #UNMATCHED_ROUTE};
+     * methods outside the standard set are counted as OTHER.
+     */
+    public void recordHttpRequest(String method, String route, int status, long durationNanos) {
+        RouteSeries series = routeSeries(method, route != null ? route : UNMATCHED_ROUTE);
+        series.requests(status).inc();
+        series.duration.observe(durationNanos / 1_000_000_000.0);
+        series.latency.record(durationNanos);
+    }
+
+    /** Records each stage of a request whose response has been written. */
+    public void recordRequestStages(String method, String route, RequestTiming timing) {
+        Histogram.Child[] stages = routeSeries(method, route != null ? route : UNMATCHED_ROUTE).stages;
+        for (RequestTiming.Stage stage : RequestTiming.Stage.values()) {
+            stages[stage.ordinal()].observe(timing.getStageNanos(stage) / 1_000_000_000.0);
+        }
+    }
+
+    /** Recent latency per route template, for all methods together. */
+    public Map<String, RollingLatencyHistogram> getRouteLatencies() {
+        return Collections.unmodifiableMap(routeLatency);
+    }
+
+    private RouteSeries routeSeries(String method, String route) {
+        RouteSeries[] byMethod = routeSeries.get(route);
+        if (byMethod == null) {
+            byMethod = routeSeries.computeIfAbsent(route, r -> new RouteSeries[METHODS.length + 1]);
         }
-        return INSTANCE;
+        int index = methodIndex(method);
+        RouteSeries series = byMethod[index];
+        if (series == null) {
+            // Racing threads resolve the same label children, so either copy may win
+            series = new RouteSeries(index < METHODS.length ? METHODS[index] : OTHER_METHOD, route);
+            byMethod[index] = series;
+        }
+        return series;
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return METHODS.length;
+    }
+
+    public void recordStaticCacheHit() {
+        staticCacheHits.inc();
     }
 
-    public void recordHttpRequest(String method, String endpoint, String status, double durationSeconds) {
-        httpRequestsTotal.labels(method, endpoint, status).inc();
-        httpRequestDuration.labels(method, endpoint).observe(durationSeconds);
+    public void recordStaticCacheMiss() {
+        staticCacheMisses.inc();
     }
 
-    public void setActiveConnections(int count) {
-        activeConnections.set(count);
+    public void recordStaticCacheEviction() {
+        staticCacheEvictions.inc();
+    }
+
+    public void setStaticCacheBytes(long bytes) {
+        staticCacheBytes.set(bytes);
+    }
+
+    public void recordCompressionSaved(long bytes) {
+        compressionBytesSaved.inc(bytes);
+    }
+
+    public void recordCompressionTime(double durationSeconds) {
+        compressionDuration.observe(durationSeconds);
+    }
+
+    public void recordQueueWait(double durationSeconds) {
+        workQueueWait.observe(durationSeconds);
+    }
+
+    public void recordRequestShed(String reason) {
+        requestsShed.labels(reason).inc();
+    }
+
+    public void setConcurrencyLimit(int limit) {
+        concurrencyLimit.set(limit);
+    }
+
+    public void setConcurrencyInFlight(int inFlight) {
+        concurrencyInFlight.set(inFlight);
+    }
+
+    public void recordConcurrencyRejection() {
+        concurrencyRejections.inc();
+    }
+
+    public void recordConnectionTimeout(String phase) {
+        connectionTimeouts.labels(phase).inc();
+    }
+
+    public void recordLogDropped(String reason) {
+        logEventsDropped.labels(reason).inc();
+    }
+
+    public void recordTrafficCapture(String result) {
+        trafficCaptured.labels(result).inc();
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.inc();
+        activeConnections.inc();
+    }
+
+    public void connectionClosed(CloseReason reason, long durationNanos, int requestCount) {
+        activeConnections.dec();
+        connectionsClosed[reason.ordinal()].inc();
+        connectionDuration.observe(durationNanos / 1_000_000_000.0);
+        requestsPerConnection.observe(requestCount);
+    }
+
+    private final class RouteSeries {
+        private static final int MIN_STATUS = 100;
+        private static final int MAX_STATUS = 599;
+
+        private final String method;
+        private final String route;
+        private final Histogram.Child duration;
+        private final RollingLatencyHistogram latency;
+        private final Histogram.Child[] stages;
+        private final AtomicReferenceArray<Counter.Child> requestsByStatus =
+                new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+
+        private RouteSeries(String method, String route) {
+            this.method = method;
+            this.route = route;
+            this.duration = httpRequestDuration.labels(method, route);
+            this.latency = routeLatency.computeIfAbsent(route,
+                    r -> new RollingLatencyHistogram(LATENCY_WINDOW_MINUTES));
+            RequestTiming.Stage[] stageValues = RequestTiming.Stage.values();
+            this.stages = new Histogram.Child[stageValues.length];
+            for (RequestTiming.Stage stage : stageValues) {
+                stages[stage.ordinal()] = httpRequestStageDuration.labels(route, stage.getLabel());
+            }
+        }
+
+        private Counter.Child requests(int status) {
+            if (status < MIN_STATUS || status > MAX_STATUS) {
+                return httpRequestsTotal.labels(method, route, String.valueOf(status));
+            }
+            Counter.Child child = requestsByStatus.get(status - MIN_STATUS);
+            if (child == null) {
+                child = httpRequestsTotal.labels(method, route, String.valueOf(status));
+                requestsByStatus.set(status - MIN_STATUS, child);
+            }
+            return child;
+        }
     }
 }
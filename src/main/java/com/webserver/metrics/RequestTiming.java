@@ -0,0 +1,122 @@
+package com.webserver.metrics;
+
+import com.webserver.ServerConfig;
+
+/**
+ * Where one request's time went, stage by stage. The parser starts a timing for each
+ * request when {@code server.timing.enabled} is set; the servers and the request
+ * processor mark the later stages as the request moves between threads, each hand-off
+ * going through an executor or a future. When timing is disabled no instance exists
+ * and every call site is a single null check.
+ */
+public final class RequestTiming {
+    public enum Stage {
+        QUEUE("queue"),
+        HEADERS("headers"),
+        BODY("body"),
+        HANDLER("handler"),
+        SERIALIZE("serialize"),
+        WRITE("write");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final boolean ENABLED = ServerConfig.getInstance().getBoolean("server.timing.enabled", true);
+    private static final boolean HEADER_ENABLED = ENABLED
+            && ServerConfig.getInstance().getBoolean("server.timing.header", false);
+    // The timing of the request whose handler is running synchronously on this thread
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long[] stageNanos = new long[STAGES.length];
+    private long handlerStartedAt;
+    private long handlerFinishedAt;
+
+    public RequestTiming(long startedAt, long headersParsedAt, long bodyReadAt) {
+        stageNanos[Stage.HEADERS.ordinal()] = headersParsedAt - startedAt;
+        stageNanos[Stage.BODY.ordinal()] = bodyReadAt - headersParsedAt;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Whether responses carry the breakdown in a {@code Server-Timing} header. */
+    public static boolean isHeaderEnabled() {
+        return HEADER_ENABLED;
+    }
+
+    /** Time the request, or the connection that carried it, waited for a worker. */
+    public void setQueueWait(long nanos) {
+        stageNanos[Stage.QUEUE.ordinal()] = nanos;
+    }
+
+    /** Marks the handler as running on the calling thread until {@link #handlerReturned}. */
+    public void handlerStarted() {
+        handlerStartedAt = System.nanoTime();
+        CURRENT.set(this);
+    }
+
+    /** The handler has returned its result or stage; its work may continue elsewhere. */
+    public void handlerReturned() {
+        CURRENT.remove();
+    }
+
+    /** The handler's response is ready. Serialization time is reported separately. */
+    public void handlerFinished() {
+        handlerFinishedAt = System.nanoTime();
+        stageNanos[Stage.HANDLER.ordinal()] = Math.max(0,
+                handlerFinishedAt - handlerStartedAt - stageNanos[Stage.SERIALIZE.ordinal()]);
+    }
+
+    /** The last byte of the response has been handed to the socket. */
+    public void responseWritten() {
+        if (handlerFinishedAt != 0) {
+            stageNanos[Stage.WRITE.ordinal()] = System.nanoTime() - handlerFinishedAt;
+        }
+    }
+
+    /** Adds serialization time to the request whose handler is running on this thread, if any. */
+    public static void recordSerialization(long nanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.stageNanos[Stage.SERIALIZE.ordinal()] += nanos;
+        }
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * The stages up to the handler as a Server-Timing header value, durations in
+     * milliseconds. The write stage has not happened yet when headers are encoded.
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(96);
+        for (Stage stage : STAGES) {
+            if (stage == Stage.WRITE) {
+                break;
+            }
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            long micros = stageNanos[stage.ordinal()] / 1_000;
+            header.append(stage.label).append(";dur=").append(micros / 1_000).append('.');
+            long fraction = micros % 1_000;
+            if (fraction < 100) {
+                header.append(fraction < 10 ? "00" : "0");
+            }
+            header.append(fraction);
+        }
+        return header.toString();
+    }
+}
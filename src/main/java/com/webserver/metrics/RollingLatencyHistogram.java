@@ -0,0 +1,52 @@
+package com.webserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency recorder over a sliding window of recent minutes. Each minute records into
+ * its own {@link LatencyHistogram}, reused round-robin; an N-minute window is read by
+ * merging the current, partial minute with the N-1 whole minutes before it, so it covers
+ * between N-1 and N minutes. The first recording of a new minute clears the slot it
+ * takes over, and recordings racing with that clear may be lost.
+ */
+public class RollingLatencyHistogram {
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final LatencyHistogram[] slots;
+    private final AtomicLongArray slotMinutes;
+
+    /** Keeps enough history for windows of up to {@code maxWindowMinutes} minutes. */
+    public RollingLatencyHistogram(int maxWindowMinutes) {
+        int slotCount = Math.max(1, maxWindowMinutes);
+        this.slots = new LatencyHistogram[slotCount];
+        this.slotMinutes = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new LatencyHistogram();
+            slotMinutes.set(i, -1);
+        }
+    }
+
+    public void record(long nanos) {
+        long minute = System.currentTimeMillis() / SLOT_MILLIS;
+        int index = (int) (minute % slots.length);
+        long slotMinute = slotMinutes.get(index);
+        if (slotMinute != minute && slotMinutes.compareAndSet(index, slotMinute, minute)) {
+            slots[index].reset();
+        }
+        slots[index].record(nanos);
+    }
+
+    /** Merges the current minute and the {@code minutes - 1} preceding ones into a new histogram. */
+    public LatencyHistogram snapshot(int minutes) {
+        LatencyHistogram merged = new LatencyHistogram();
+        long now = System.currentTimeMillis() / SLOT_MILLIS;
+        for (long minute = now - Math.min(minutes, slots.length) + 1; minute <= now; minute++) {
+            int index = (int) (minute % slots.length);
+            if (slotMinutes.get(index) == minute) {
+                merged.add(slots[index]);
+            }
+        }
+        return merged;
+    }
+}
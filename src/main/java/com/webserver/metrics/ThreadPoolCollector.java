@@ -0,0 +1,46 @@
+package com.webserver.metrics;
+
+import com.webserver.ThreadPoolManager;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.util.List;
+
+/**
+ * Reads the worker pool's state at scrape time instead of updating gauges on every task,
+ * so saturation is visible without adding work to the request path. Queue wait time is
+ * recorded per task by {@link MetricsCollector#recordQueueWait}.
+ */
+public class ThreadPoolCollector extends Collector {
+    private final ThreadPoolManager threadPool;
+
+    public ThreadPoolCollector(ThreadPoolManager threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        ThreadPoolManager.ThreadPoolInfo info = threadPool.getInfo();
+        List<String> labels = List.of("strategy");
+        List<String> values = List.of(info.strategy.getConfigName());
+
+        GaugeMetricFamily poolSize = new GaugeMetricFamily("thread_pool_size",
+                "Worker threads currently in the pool", labels);
+        poolSize.addMetric(values, info.totalThreads);
+        GaugeMetricFamily active = new GaugeMetricFamily("thread_pool_active_threads",
+                "Workers currently running a task", labels);
+        active.addMetric(values, info.activeThreads);
+        GaugeMetricFamily queued = new GaugeMetricFamily("thread_pool_queue_depth",
+                "Tasks waiting in the worker queue", labels);
+        queued.addMetric(values, info.queuedTasks);
+        CounterMetricFamily completed = new CounterMetricFamily("thread_pool_completed_tasks",
+                "Tasks the workers have finished", labels);
+        completed.addMetric(values, info.completedTasks);
+        CounterMetricFamily rejected = new CounterMetricFamily("thread_pool_rejected_tasks",
+                "Tasks rejected because the queue was full or expired before a worker took them", labels);
+        rejected.addMetric(values, info.shedTasks);
+
+        return List.of(poolSize, active, queued, completed, rejected);
+    }
+}
@@ -0,0 +1,257 @@
+package com.webserver.nio;
+
+import com.webserver.HttpParseException;
+import com.webserver.HttpRequestParser;
+import com.webserver.Request;
+import com.webserver.Response;
+import com.webserver.ResponseBody;
+import com.webserver.ServerConfig;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.CloseReason;
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.timeout.ConnectionDeadline;
+import com.webserver.timeout.TimeoutPhase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+
+class NioConnection {
+    private static final StructuredLogger logger = new StructuredLogger(NioConnection.class);
+    // While a response is pending, bytes of further pipelined requests are held up to this size
+    private static final int MAX_PIPELINED_BYTES = 64 * 1024;
+
+    private final NioEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final long connectionId;
+    private final int maxRequests;
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private final ConnectionDeadline deadline;
+    private final long openedAt = System.nanoTime();
+    private SelectionKey key;
+    private ByteBuffer pipelined;
+    private ByteBuffer[] pendingWrite;
+    private ResponseBody pendingBody;
+    private Runnable onWritten;
+    private CompletableFuture<Response> awaiting;
+    private int requestsServed = 0;
+    private boolean keepAlive = true;
+    private boolean closed = false;
+
+    NioConnection(NioEventLoop eventLoop, SocketChannel channel, long connectionId) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.connectionId = connectionId;
+        this.maxRequests = ServerConfig.getInstance().getKeepAliveMaxRequests();
+        this.deadline = new ConnectionDeadline(eventLoop.timerWheel(), phase -> eventLoop.execute(this::onTimeout));
+        MetricsCollector.getInstance().connectionOpened();
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+        deadline.arm(TimeoutPhase.IDLE);
+    }
+
+    NioEventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    void onReadable() {
+        try {
+            // The read buffer is shared by every connection on this loop; the parser copies
+            // out what it needs, so idle connections hold no buffer of their own.
+            ByteBuffer buffer = eventLoop.readBuffer();
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read == -1) {
+                if (awaiting != null) {
+                    logger.debug("Connection #{} closed by client, cancelling its request", connectionId);
+                }
+                close(awaiting == null && parser.isIdle() ? CloseReason.CLIENT : CloseReason.ERROR);
+                return;
+            }
+
+            buffer.flip();
+            if (awaiting != null) {
+                holdPipelined(buffer);
+            } else {
+                processInput(buffer);
+            }
+        } catch (IOException e) {
+            logger.debug("Connection #{} read error: {}", connectionId, e.getMessage());
+            close(CloseReason.ERROR);
+        }
+    }
+
+    private void processInput(ByteBuffer buffer) {
+        Request request;
+        try {
+            request = parser.parse(buffer);
+        } catch (HttpParseException e) {
+            logger.info("Bad request on connection #{}: {}", connectionId, e.getMessage());
+            Response response = new Response(e.getStatusCode(),
+                    "<h1>" + e.getStatusCode() + " - " + e.getMessage() + "</h1>");
+            response.setKeepAlive(false, 0);
+            send(response.toByteBuffers(null), null, false);
+            return;
+        }
+        if (request == null) {
+            deadline.enter(parser.isIdle() ? TimeoutPhase.IDLE
+                    : parser.isReadingBody() ? TimeoutPhase.BODY : TimeoutPhase.HEADER);
+            return;
+        }
+        deadline.disarm();
+
+        // Keep bytes of any pipelined requests until this response has been written
+        if (buffer.hasRemaining()) {
+            pipelined = ByteBuffer.allocate(buffer.remaining()).put(buffer).flip();
+        }
+
+        requestsServed++;
+        keepAlive = request.isKeepAlive() && requestsServed < maxRequests;
+        key.interestOps(0);
+        eventLoop.dispatch(this, request, keepAlive);
+    }
+
+    /**
+     * Reads while an asynchronous handler works so that a client disconnect is noticed
+     * and the handler cancelled. Anything the client sends meanwhile is kept for later.
+     */
+    void awaitResponse(CompletableFuture<Response> pending) {
+        if (closed) {
+            pending.cancel(true);
+            return;
+        }
+        if (pending.isDone()) {
+            return;
+        }
+        awaiting = pending;
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void holdPipelined(ByteBuffer buffer) {
+        int held = pipelined != null ? pipelined.remaining() : 0;
+        ByteBuffer combined = ByteBuffer.allocate(held + buffer.remaining());
+        if (pipelined != null) {
+            combined.put(pipelined);
+        }
+        pipelined = combined.put(buffer).flip();
+        if (pipelined.remaining() >= MAX_PIPELINED_BYTES) {
+            key.interestOps(0);
+        }
+    }
+
+    void send(ByteBuffer[] buffers, ResponseBody body, boolean keepAlive) {
+        send(buffers, body, keepAlive, null);
+    }
+
+    /** Writes the response; {@code onWritten} runs on this loop once its last byte is written. */
+    void send(ByteBuffer[] buffers, ResponseBody body, boolean keepAlive, Runnable onWritten) {
+        awaiting = null;
+        if (closed) {
+            if (body != null) {
+                body.close();
+            }
+            return;
+        }
+        this.keepAlive = keepAlive;
+        pendingWrite = buffers;
+        pendingBody = body;
+        this.onWritten = onWritten;
+        onWritable();
+    }
+
+    void onWritable() {
+        if (closed || (pendingWrite == null && pendingBody == null)) {
+            return;
+        }
+        try {
+            if (pendingWrite != null) {
+                channel.write(pendingWrite);
+                if (pendingWrite[pendingWrite.length - 1].hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    deadline.arm(TimeoutPhase.WRITE);
+                    return;
+                }
+                pendingWrite = null;
+            }
+            if (pendingBody != null) {
+                if (!pendingBody.writeTo(channel)) {
+                    // A streaming body with nothing queued wakes us up itself when data arrives;
+                    // only a client that stops draining the socket is on the clock
+                    if (pendingBody.isAwaitingData()) {
+                        key.interestOps(0);
+                        deadline.disarm();
+                    } else {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        deadline.arm(TimeoutPhase.WRITE);
+                    }
+                    return;
+                }
+                pendingBody.close();
+                pendingBody = null;
+            }
+            if (onWritten != null) {
+                Runnable written = onWritten;
+                onWritten = null;
+                written.run();
+            }
+            if (!keepAlive) {
+                close();
+                return;
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+            deadline.arm(TimeoutPhase.IDLE);
+            if (pipelined != null) {
+                ByteBuffer next = pipelined;
+                pipelined = null;
+                processInput(next);
+            }
+        } catch (IOException e) {
+            logger.debug("Connection #{} write error: {}", connectionId, e.getMessage());
+            close(CloseReason.ERROR);
+        }
+    }
+
+    private void onTimeout() {
+        if (closed || !deadline.isExpired()) {
+            return;
+        }
+        TimeoutPhase phase = deadline.getPhase();
+        logger.info("Connection #{} {} timeout", connectionId, phase.getLabel());
+        MetricsCollector.getInstance().recordConnectionTimeout(phase.getLabel());
+        close();
+    }
+
+    void close() {
+        close(CloseReason.SERVER);
+    }
+
+    private void close(CloseReason reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deadline.disarm();
+        if (awaiting != null) {
+            awaiting.cancel(true);
+            awaiting = null;
+        }
+        if (pendingBody != null) {
+            pendingBody.close();
+            pendingBody = null;
+        }
+        MetricsCollector.getInstance().connectionClosed(reason, System.nanoTime() - openedAt, requestsServed);
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing connection #{}: {}", connectionId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.webserver.nio;
+
+import com.webserver.Request;
+import com.webserver.RequestProcessor;
+import com.webserver.Response;
+import com.webserver.ResponseBody;
+import com.webserver.ServerConfig;
+import com.webserver.StreamingBody;
+import com.webserver.ThreadPoolManager;
+import com.webserver.WebServer;
+import com.webserver.capture.TrafficCapture;
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.MetricsCollector;
+import com.webserver.metrics.RequestTiming;
+import com.webserver.timeout.HashedTimerWheel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NioServer implements WebServer {
+    private static final StructuredLogger logger = new StructuredLogger(NioServer.class);
+    private final int port;
+    private final ThreadPoolManager threadPool;
+    private final RequestProcessor requestProcessor;
+    private final NioEventLoop[] eventLoops;
+    private final AtomicLong connectionCounter;
+    private final int idleTimeoutMs;
+    private final byte[] overloadResponse;
+    private final HashedTimerWheel timerWheel;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile boolean isRunning = false;
+    private volatile int boundPort;
+    private int nextLoop = 0;
+
+    public NioServer(int port, int threadCount, int eventLoopCount) {
+        this.port = port;
+        this.threadPool = new ThreadPoolManager(threadCount);
+        this.requestProcessor = new RequestProcessor(threadCount);
+        this.connectionCounter = new AtomicLong(0);
+        this.eventLoops = new NioEventLoop[eventLoopCount];
+        this.idleTimeoutMs = ServerConfig.getInstance().getKeepAliveIdleTimeoutMs();
+        this.timerWheel = new HashedTimerWheel("connection-timer", 100, 512);
+        this.overloadResponse = Response.encodeServiceUnavailable(
+                ServerConfig.getInstance().getInt("server.executor.retry-after-seconds", 1));
+
+        System.out.println("🏗️  NIO server created");
+        System.out.println("📍 Port: " + port);
+        System.out.println("🔁 Event loops: " + eventLoopCount);
+        System.out.println("🧵 Worker pool size: " + threadCount);
+    }
+
+    @Override
+    public void start() {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(port), 1024);
+            serverChannel = channel;
+
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new NioEventLoop(this, i);
+                eventLoops[i].start();
+            }
+            isRunning = true;
+            boundPort = channel.socket().getLocalPort();
+
+            System.out.println("🚀 NIO server started on http://localhost:" + boundPort);
+            System.out.println("⏹️  Press Ctrl+C to stop");
+            System.out.println();
+
+            while (isRunning) {
+                try {
+                    SocketChannel clientChannel = channel.accept();
+                    clientChannel.configureBlocking(false);
+                    clientChannel.socket().setTcpNoDelay(true);
+
+                    long connectionId = connectionCounter.incrementAndGet();
+                    nextEventLoop().register(clientChannel, connectionId);
+
+                } catch (ClosedChannelException e) {
+                    break;
+                } catch (IOException e) {
+                    if (isRunning) {
+                        logger.error("Error accepting connection: {}", e.getMessage());
+                    }
+                }
+            }
+
+        } catch (IOException e) {
+            System.err.println("💥 Failed to start server: " + e.getMessage());
+        } finally {
+            stop();
+        }
+    }
+
+    HashedTimerWheel timerWheel() {
+        return timerWheel;
+    }
+
+    private NioEventLoop nextEventLoop() {
+        NioEventLoop loop = eventLoops[nextLoop];
+        nextLoop = (nextLoop + 1) % eventLoops.length;
+        return loop;
+    }
+
+    void dispatch(NioConnection connection, Request request, boolean keepAlive) {
+        long dispatchedAt = System.nanoTime();
+        try {
+            threadPool.execute(() -> process(connection, request, keepAlive, dispatchedAt),
+                    () -> connection.eventLoop().execute(() -> shed(connection)));
+        } catch (RejectedExecutionException e) {
+            // dispatch runs on the connection's event loop, so the 503 can be written directly
+            shed(connection);
+        }
+    }
+
+    private void shed(NioConnection connection) {
+        connection.send(new ByteBuffer[]{ByteBuffer.wrap(overloadResponse)}, null, false);
+    }
+
+    private void process(NioConnection connection, Request request, boolean keepAlive, long dispatchedAt) {
+        long startTime = System.nanoTime();
+        request.setQueueWaitNanos(startTime - dispatchedAt);
+        if (request.getTiming() != null) {
+            request.getTiming().setQueueWait(startTime - dispatchedAt);
+        }
+        CompletableFuture<Response> pending = requestProcessor.processRequestAsync(request);
+        if (pending.isDone()) {
+            respond(connection, request, keepAlive, pending.join(), startTime);
+            return;
+        }
+
+        // Watch for the client going away while the handler works, then finish on a worker
+        connection.eventLoop().execute(() -> connection.awaitResponse(pending));
+        pending.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                // The connection closed while waiting and cancelled the response itself
+                return;
+            }
+            if (error != null) {
+                logger.error("Response for {} {} failed: {}", request.getMethod(), request.getPath(), error.getMessage());
+                connection.eventLoop().execute(() -> fail(connection));
+                return;
+            }
+            try {
+                threadPool.execute(() -> respond(connection, request, keepAlive, response, startTime));
+            } catch (RejectedExecutionException e) {
+                connection.eventLoop().execute(() -> shed(connection));
+            }
+        });
+    }
+
+    private void fail(NioConnection connection) {
+        Response response = new Response(500, "<h1>500 - Internal Server Error</h1>");
+        response.setKeepAlive(false, 0);
+        connection.send(response.toByteBuffers(null), null, false);
+    }
+
+    private void respond(NioConnection connection, Request request, boolean keepAlive,
+                         Response response, long startTime) {
+        if (request.getMethod().equals("HEAD")) {
+            response.omitBody();
+        }
+        boolean connectionKeepAlive = keepAlive && !response.isCloseDelimited();
+        response.setKeepAlive(connectionKeepAlive, idleTimeoutMs / 1000);
+
+        ByteBuffer[] buffers = response.toByteBuffers(null);
+        ResponseBody body = response.getResponseBody();
+        StreamingBody streaming = body instanceof StreamingBody s ? s : null;
+        if (streaming != null) {
+            streaming.openPipe(() -> connection.eventLoop().execute(connection::onWritable));
+        }
+        // Recorded once the last byte is written, as the threaded server does
+        RequestTiming timing = request.getTiming();
+        Runnable onWritten = () -> {
+            if (timing != null) {
+                timing.responseWritten();
+                MetricsCollector.getInstance().recordRequestStages(request.getMethod(), request.getRouteTemplate(), timing);
+            }
+            MetricsCollector.getInstance().recordHttpRequest(
+                    request.getMethod(), request.getRouteTemplate(),
+                    response.getStatusCode(),
+                    System.nanoTime() - startTime
+            );
+            TrafficCapture.record(request, response.getStatusCode(), request.getArrivedAt(),
+                    System.nanoTime() - request.getArrivedAt());
+        };
+        connection.eventLoop().execute(() -> connection.send(buffers, body, connectionKeepAlive, onWritten));
+        if (streaming != null) {
+            // The handler's writer runs here, throttled by the event loop draining the pipe
+            streaming.produce();
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return boundPort;
+    }
+
+    @Override
+    public void stop() {
+        if (isRunning) {
+            System.out.println("\n🛑 Stopping NIO server...");
+            isRunning = false;
+
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                System.err.println("❌ Error closing server channel: " + e.getMessage());
+            }
+            for (NioEventLoop loop : eventLoops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+            threadPool.shutdown();
+            timerWheel.stop();
+
+            System.out.println("📊 Final stats:");
+            System.out.println("   • Total connections handled: " + connectionCounter.get());
+            System.out.println("   • Total requests processed: " + requestProcessor.getRequestCount());
+            System.out.println("✅ NIO server stopped successfully");
+        }
+    }
+}
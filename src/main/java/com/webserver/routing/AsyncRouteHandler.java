@@ -0,0 +1,15 @@
+package com.webserver.routing;
+
+import com.webserver.Request;
+import com.webserver.Response;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A handler that completes its response later, e.g. after a timer or a call to another
+ * service, without holding a worker thread while it waits.
+ */
+@FunctionalInterface
+public interface AsyncRouteHandler {
+    CompletionStage<Response> handle(Request request) throws Exception;
+}
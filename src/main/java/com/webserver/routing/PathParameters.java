@@ -0,0 +1,69 @@
+package com.webserver.routing;
+
+/**
+ * Path parameters captured by the {@link Router}. Values are kept as offsets into the
+ * request path, and {@code long} parameters are parsed during matching, so reading a
+ * numeric id allocates nothing.
+ */
+public class PathParameters {
+    public static final PathParameters EMPTY = new PathParameters("", 0);
+
+    private final String path;
+    private final String[] names;
+    private final int[] starts;
+    private final int[] ends;
+    private final long[] longValues;
+    private int count = 0;
+
+    PathParameters(String path, int capacity) {
+        this.path = path;
+        this.names = new String[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.longValues = new long[capacity];
+    }
+
+    void push(String name, int start, int end, long longValue) {
+        names[count] = name;
+        starts[count] = start;
+        ends[count] = end;
+        longValues[count] = longValue;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    void truncate(int size) {
+        count = size;
+    }
+
+    /** The value of a {@code {name:long}} parameter; throws if the route declares no such parameter. */
+    public long getLong(String name) {
+        return longValues[indexOf(name)];
+    }
+
+    public String getString(String name) {
+        int index = indexOf(name);
+        return path.substring(starts[index], ends[index]);
+    }
+
+    public boolean has(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No path parameter named " + name);
+    }
+}
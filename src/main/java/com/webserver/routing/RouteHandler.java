@@ -0,0 +1,9 @@
+package com.webserver.routing;
+
+import com.webserver.Request;
+import com.webserver.Response;
+
+@FunctionalInterface
+public interface RouteHandler {
+    Response handle(Request request) throws Exception;
+}
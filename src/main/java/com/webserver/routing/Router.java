@@ -0,0 +1,301 @@
+package com.webserver.routing;
+
+import com.webserver.Request;
+import com.webserver.Response;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Dispatches requests through a trie of path segments built once at startup from
+ * templates such as {@code /api/users/{id:long}}. Literal segments are compared in
+ * place against the request path and win over parameters; {@code {name:long}} only
+ * matches decimal digits and is parsed while matching. A path that matches with the
+ * wrong method gets a 405 listing the allowed methods. HEAD is answered by the GET route
+ * unless one is registered for it; the server then sends the head without the body.
+ * Fallbacks and 405 responses can be set per path prefix, so an API can answer its own
+ * unknown paths and wrong methods in its own format.
+ *
+ * <p>Synchronous handlers are adapted to already-completed stages; asynchronous ones are
+ * bounded by a per-route timeout, after which their stage fails with a TimeoutException.
+ */
+public class Router {
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final Node root = new Node(null);
+    private int maxParameters = 0;
+    private final List<Scope> scopes = new ArrayList<>();
+
+    public Router add(String method, String template, RouteHandler handler) {
+        return register(method, template, synchronous(handler));
+    }
+
+    public Router addAsync(String method, String template, long timeoutMs, AsyncRouteHandler handler) {
+        return register(method, template, request -> handler.handle(request).toCompletableFuture()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS));
+    }
+
+    private Router register(String method, String template, AsyncRouteHandler handler) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Route template must start with '/': " + template);
+        }
+
+        Node node = root;
+        int parameters = 0;
+        for (String segment : template.substring(1).split("/", -1)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                node = node.paramChild(segment.substring(1, segment.length() - 1), template);
+                parameters++;
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+        if (node.handlers.putIfAbsent(method, handler) != null) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + template);
+        }
+        node.template = template;
+        node.allow = String.join(", ", node.handlers.keySet());
+        if (node.handlers.containsKey("GET") && !node.handlers.containsKey("HEAD")) {
+            node.allow += ", HEAD";
+        }
+        maxParameters = Math.max(maxParameters, parameters);
+        return this;
+    }
+
+    public Router get(String template, RouteHandler handler) {
+        return add("GET", template, handler);
+    }
+
+    public Router post(String template, RouteHandler handler) {
+        return add("POST", template, handler);
+    }
+
+    public Router put(String template, RouteHandler handler) {
+        return add("PUT", template, handler);
+    }
+
+    public Router delete(String template, RouteHandler handler) {
+        return add("DELETE", template, handler);
+    }
+
+    /**
+     * Handles every request under the prefix of {@code template} (such as {@code /api/*},
+     * or {@code /*} for everything) that matches no route, for any method. The longest
+     * matching prefix wins.
+     */
+    public Router fallback(String template, RouteHandler handler) {
+        scope(template).fallback = synchronous(handler);
+        return this;
+    }
+
+    /**
+     * Builds the 405 for routes under the prefix of {@code template} from the allowed
+     * methods, instead of the default HTML page. The Allow header is added either way.
+     */
+    public Router methodNotAllowed(String template, Function<String, Response> responder) {
+        scope(template).methodNotAllowed = responder;
+        return this;
+    }
+
+    private Scope scope(String template) {
+        if (!template.endsWith("/*")) {
+            throw new IllegalArgumentException("Fallback template must end with '/*': " + template);
+        }
+        for (Scope scope : scopes) {
+            if (scope.template.equals(template)) {
+                return scope;
+            }
+        }
+        Scope scope = new Scope(template);
+        scopes.add(scope);
+        return scope;
+    }
+
+    // The innermost scope covering the path that has the wanted handler set
+    private Scope findScope(String path, boolean wantFallback) {
+        Scope found = null;
+        for (Scope scope : scopes) {
+            if ((wantFallback ? scope.fallback != null : scope.methodNotAllowed != null) && scope.covers(path)
+                    && (found == null || scope.prefix.length() > found.prefix.length())) {
+                found = scope;
+            }
+        }
+        return found;
+    }
+
+    private static AsyncRouteHandler synchronous(RouteHandler handler) {
+        return request -> CompletableFuture.completedFuture(handler.handle(request));
+    }
+
+    /**
+     * Finds the route for the request, records its template and path parameters on the
+     * request and runs its handler. Returns null when nothing matches and no fallback is set.
+     * Exceptions thrown by a handler before it returns a stage propagate from here.
+     */
+    public CompletionStage<Response> route(Request request) throws Exception {
+        String path = request.getPath();
+        Node node = path.startsWith("/") ? find(root, path, 0, request, null) : null;
+
+        if (node == null) {
+            Scope scope = findScope(path, true);
+            if (scope == null) {
+                return null;
+            }
+            request.setRouteTemplate(scope.template);
+            return scope.fallback.handle(request);
+        }
+
+        request.setRouteTemplate(node.template);
+        AsyncRouteHandler handler = node.handlers.get(request.getMethod());
+        if (handler == null && request.getMethod().equals("HEAD")) {
+            handler = node.handlers.get("GET");
+        }
+        if (handler == null) {
+            Scope scope = findScope(path, false);
+            Response response = scope != null ? scope.methodNotAllowed.apply(node.allow)
+                    : new Response(405, "<h1>405 - Method Not Allowed</h1>");
+            response.addHeader("Allow", node.allow);
+            return CompletableFuture.completedFuture(response);
+        }
+        return handler.handle(request);
+    }
+
+    // pos is the index of the '/' that starts the next segment, or path.length() at the end
+    private Node find(Node node, String path, int pos, Request request, PathParameters parameters) {
+        if (pos == path.length()) {
+            return node.handlers.isEmpty() ? null : node;
+        }
+        int start = pos + 1;
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - start;
+
+        for (Node child : node.literals) {
+            if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                Node found = find(child, path, end, request, parameters);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
+        Node param = node.param;
+        if (param == null || length == 0) {
+            return null;
+        }
+        long longValue = 0;
+        if (param.paramType == ParamType.LONG) {
+            longValue = parseLong(path, start, end);
+            if (longValue < 0) {
+                return null;
+            }
+        }
+
+        boolean created = parameters == null;
+        if (created) {
+            parameters = new PathParameters(path, maxParameters);
+        }
+        int mark = parameters.size();
+        parameters.push(param.paramName, start, end, longValue);
+        Node found = find(param, path, end, request, parameters);
+        if (found == null) {
+            parameters.truncate(mark);
+        } else if (created) {
+            request.setPathParameters(parameters);
+        }
+        return found;
+    }
+
+    // Non-negative decimal without sign or overflow, else -1
+    private static long parseLong(String path, int start, int end) {
+        if (end - start > MAX_LONG_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private enum ParamType { STRING, LONG }
+
+    private static final class Scope {
+        private final String template;
+        private final String prefix;
+        private AsyncRouteHandler fallback;
+        private Function<String, Response> methodNotAllowed;
+
+        private Scope(String template) {
+            this.template = template;
+            this.prefix = template.substring(0, template.length() - 2);
+        }
+
+        // "/api/*" covers /api and everything below it, but not /apis
+        private boolean covers(String path) {
+            return path.startsWith(prefix)
+                    && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+        }
+    }
+
+    private static final class Node {
+        private final String segment;
+        private Node[] literals = new Node[0];
+        private Node param;
+        private String paramName;
+        private ParamType paramType;
+        private final Map<String, AsyncRouteHandler> handlers = new LinkedHashMap<>();
+        private String template;
+        private String allow;
+
+        private Node(String segment) {
+            this.segment = segment;
+        }
+
+        private Node literalChild(String segment) {
+            for (Node child : literals) {
+                if (child.segment.equals(segment)) {
+                    return child;
+                }
+            }
+            Node child = new Node(segment);
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literals[literals.length - 1] = child;
+            return child;
+        }
+
+        private Node paramChild(String declaration, String template) {
+            int colon = declaration.indexOf(':');
+            String name = colon < 0 ? declaration : declaration.substring(0, colon);
+            ParamType type = switch (colon < 0 ? "string" : declaration.substring(colon + 1)) {
+                case "string" -> ParamType.STRING;
+                case "long" -> ParamType.LONG;
+                default -> throw new IllegalArgumentException(
+                        "Unknown parameter type in route " + template + ": " + declaration);
+            };
+
+            if (param == null) {
+                param = new Node(null);
+                param.paramName = name;
+                param.paramType = type;
+            } else if (!param.paramName.equals(name) || param.paramType != type) {
+                throw new IllegalArgumentException("Route " + template + " conflicts with parameter {" +
+                        param.paramName + "} already registered at the same position");
+            }
+            return param;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.webserver.storage;
+
+/** Thrown when a user would take an email address another user already has. */
+public class DuplicateEmailException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String email;
+
+    public DuplicateEmailException(String email) {
+        super("A user with email " + email + " already exists");
+        this.email = email;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
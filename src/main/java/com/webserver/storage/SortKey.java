@@ -0,0 +1,28 @@
+package com.webserver.storage;
+
+/** Position of a user in a sorted index: the sort value, then the id to break ties. */
+final class SortKey implements Comparable<SortKey> {
+    final long value;
+    final long id;
+
+    SortKey(long value, long id) {
+        this.value = value;
+        this.id = id;
+    }
+
+    @Override
+    public int compareTo(SortKey other) {
+        int byValue = Long.compare(value, other.value);
+        return byValue != 0 ? byValue : Long.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SortKey other && value == other.value && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value) * 31 + Long.hashCode(id);
+    }
+}
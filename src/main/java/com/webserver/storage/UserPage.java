@@ -0,0 +1,24 @@
+package com.webserver.storage;
+
+import com.webserver.model.User;
+
+import java.util.List;
+
+/** One page of users and the cursor for the page after it, or null on the last page. */
+public class UserPage {
+    private final List<User> users;
+    private final String nextCursor;
+
+    UserPage(List<User> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
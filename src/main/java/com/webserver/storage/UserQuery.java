@@ -0,0 +1,67 @@
+package com.webserver.storage;
+
+import com.webserver.model.User;
+
+/**
+ * Filters and order for listing users. A range on the field the results are sorted by
+ * is answered from that field's index; any other filter is checked against each user
+ * the walk visits. Unless a sort is chosen, results are sorted by the filtered field.
+ */
+public class UserQuery {
+    private UserSort sort;
+    private int minAge = Integer.MIN_VALUE;
+    private int maxAge = Integer.MAX_VALUE;
+    private long createdAfter = Long.MIN_VALUE;
+
+    public UserQuery sortBy(UserSort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    /**
+     * Ages from {@code min} to {@code max}, both inclusive.
+     *
+     * @throws IllegalArgumentException if {@code min} is greater than {@code max}
+     */
+    public UserQuery ageBetween(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("minAge must not be greater than maxAge");
+        }
+        this.minAge = min;
+        this.maxAge = max;
+        return this;
+    }
+
+    /** Users created strictly after the given epoch milliseconds. */
+    public UserQuery createdAfter(long epochMillis) {
+        this.createdAfter = epochMillis;
+        return this;
+    }
+
+    public UserSort getSort() {
+        if (sort != null) {
+            return sort;
+        }
+        if (minAge != Integer.MIN_VALUE || maxAge != Integer.MAX_VALUE) {
+            return UserSort.AGE;
+        }
+        return createdAfter != Long.MIN_VALUE ? UserSort.CREATED_AT : UserSort.ID;
+    }
+
+    // Inclusive bounds on the sort value that the sorted index can seek to
+    long lowerBound(UserSort sort) {
+        return switch (sort) {
+            case AGE -> minAge;
+            case CREATED_AT -> createdAfter == Long.MAX_VALUE ? Long.MAX_VALUE : createdAfter + 1;
+            case ID -> Long.MIN_VALUE;
+        };
+    }
+
+    long upperBound(UserSort sort) {
+        return sort == UserSort.AGE ? maxAge : Long.MAX_VALUE;
+    }
+
+    boolean matches(User user) {
+        return user.getAge() >= minAge && user.getAge() <= maxAge && user.getCreatedAt() > createdAfter;
+    }
+}
@@ -0,0 +1,47 @@
+package com.webserver.storage;
+
+import com.webserver.model.User;
+
+/** Orders in which users can be paged through; ties are broken by id. */
+public enum UserSort {
+    ID("id") {
+        @Override
+        long valueOf(User user) {
+            return user.getId();
+        }
+    },
+    CREATED_AT("createdAt") {
+        @Override
+        long valueOf(User user) {
+            return user.getCreatedAt();
+        }
+    },
+    AGE("age") {
+        @Override
+        long valueOf(User user) {
+            return user.getAge();
+        }
+    };
+
+    private final String parameter;
+
+    UserSort(String parameter) {
+        this.parameter = parameter;
+    }
+
+    abstract long valueOf(User user);
+
+    /** The name used in {@code ?sort=} and inside cursors. */
+    public String getParameter() {
+        return parameter;
+    }
+
+    public static UserSort fromParameter(String parameter) {
+        for (UserSort sort : values()) {
+            if (sort.parameter.equals(parameter)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort '" + parameter + "' (expected id, createdAt or age)");
+    }
+}
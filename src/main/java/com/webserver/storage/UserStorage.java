@@ -1,15 +1,28 @@
 package com.webserver.storage;
 
+import com.webserver.logging.StructuredLogger;
 import com.webserver.model.User;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class UserStorage {
+    private static final StructuredLogger logger = new StructuredLogger(UserStorage.class);
     private final Map<Long, User> users = new ConcurrentHashMap<>();
+    // One skip list per sort order over the same users, so a page is a seek plus a walk.
+    // A user's entries change only inside users.compute for its id, keeping them in step
+    private final Map<UserSort, ConcurrentSkipListMap<SortKey, User>> sortIndexes = new EnumMap<>(UserSort.class);
+    // Normalized email to the id that owns it. An email is claimed before the user is
+    // stored or replaced, so two users can never both get it, and released once nobody has it
+    private final Map<String, Long> emailIndex = new ConcurrentHashMap<>();
     private final AtomicLong idGenerator = new AtomicLong(1);
 
     public UserStorage() {
+        for (UserSort sort : UserSort.values()) {
+            sortIndexes.put(sort, new ConcurrentSkipListMap<>());
+        }
         initializeSampleData();
     }
 
@@ -19,39 +32,132 @@ public class UserStorage {
         createUser(new User(null, "Bob Johnson", "bob@example.com", 25));
     }
 
+    /** @throws DuplicateEmailException if another user already has the email */
     public User createUser(User user) {
         if (user.getId() == null) {
             user.setId(idGenerator.getAndIncrement());
         }
-        users.put(user.getId(), user);
-        System.out.println("� Created user: " + user);
+        claimEmail(user);
+        users.compute(user.getId(), (id, existing) -> {
+            reindex(existing, user);
+            return user;
+        });
+        logger.logUserOperation("create", String.valueOf(user.getId()), "success");
         return user;
     }
 
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        return new ArrayList<>(sortIndexes.get(UserSort.ID).values());
+    }
+
+    /** Live, weakly consistent view of all users in id order for streaming without copying. */
+    public Collection<User> getUsersView() {
+        return Collections.unmodifiableCollection(sortIndexes.get(UserSort.ID).values());
+    }
+
+    /**
+     * Returns up to {@code limit} users in {@code sort} order following the position
+     * {@code cursor} points at, or from the start when it is null. Cursors name a
+     * position rather than an offset, so users created or deleted meanwhile never make a
+     * page repeat or skip the others.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order
+     */
+    public UserPage getUsersPage(UserSort sort, String cursor, int limit) {
+        return findUsers(new UserQuery().sortBy(sort), cursor, limit);
+    }
+
+    /**
+     * Like {@link #getUsersPage} for the users matching the query. The range on the sort
+     * field bounds the index walk, so a page costs O(log n + page) plus the users other
+     * filters reject.
+     */
+    public UserPage findUsers(UserQuery query, String cursor, int limit) {
+        UserSort sort = query.getSort();
+        SortKey after = cursor != null ? decodeCursor(sort, cursor) : null;
+        long lower = query.lowerBound(sort);
+        long upper = query.upperBound(sort);
+        if (lower > upper) {
+            // An empty range, e.g. createdAfter the newest possible timestamp
+            return new UserPage(List.of(), null);
+        }
+        NavigableMap<SortKey, User> index = sortIndexes.get(sort).subMap(
+                new SortKey(lower, Long.MIN_VALUE), true, new SortKey(upper, Long.MAX_VALUE), true);
+        if (after != null) {
+            index = index.tailMap(after, false);
+        }
+
+        List<User> page = new ArrayList<>(Math.min(limit, 64));
+        SortKey last = null;
+        boolean more = false;
+        for (Map.Entry<SortKey, User> entry : index.entrySet()) {
+            if (!query.matches(entry.getValue())) {
+                continue;
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new UserPage(page, more ? encodeCursor(sort, last) : null);
+    }
+
+    /**
+     * Like {@link #findUsers} for the user with the given email, found through the email
+     * index. There is at most one, so the page never has a next cursor.
+     */
+    public UserPage findUsersByEmail(String email, UserQuery query, String cursor) {
+        UserSort sort = query.getSort();
+        SortKey after = cursor != null ? decodeCursor(sort, cursor) : null;
+        List<User> page = getUserByEmail(email)
+                .filter(query::matches)
+                .filter(user -> after == null || new SortKey(sort.valueOf(user), user.getId()).compareTo(after) > 0)
+                .map(List::of)
+                .orElse(List.of());
+        return new UserPage(page, null);
+    }
+
+    /** Looks the user up by email, ignoring case and surrounding whitespace. */
+    public Optional<User> getUserByEmail(String email) {
+        String key = normalizeEmail(email);
+        Long id = key != null ? emailIndex.get(key) : null;
+        User user = id != null ? users.get(id) : null;
+        // The owner may have changed its email since the index was read
+        return user != null && key.equals(normalizeEmail(user.getEmail())) ? Optional.of(user) : Optional.empty();
     }
 
     public Optional<User> getUserById(Long id) {
         return Optional.ofNullable(users.get(id));
     }
 
+    /** @throws DuplicateEmailException if another user already has the new email */
     public User updateUser(Long id, User updatedUser) {
-        User existingUser = users.get(id);
-        if (existingUser != null) {
-            updatedUser.setId(id);
+        updatedUser.setId(id);
+        // Claimed only once the user is known to exist, so an update of a missing id
+        // never holds the email, even briefly
+        User result = users.computeIfPresent(id, (key, existingUser) -> {
+            claimEmail(updatedUser);
             updatedUser.setCreatedAt(existingUser.getCreatedAt());
-            users.put(id, updatedUser);
-            System.out.println("📝 Updated user: " + updatedUser);
+            reindex(existingUser, updatedUser);
             return updatedUser;
+        });
+        if (result != null) {
+            logger.logUserOperation("update", String.valueOf(id), "success");
         }
-        return null;
+        return result;
     }
 
     public boolean deleteUser(Long id) {
-        User deletedUser = users.remove(id);
-        if (deletedUser != null) {
-            System.out.println("🗑️ Deleted user: " + deletedUser);
+        User[] deletedUser = new User[1];
+        users.computeIfPresent(id, (key, existingUser) -> {
+            reindex(existingUser, null);
+            deletedUser[0] = existingUser;
+            return null;
+        });
+        if (deletedUser[0] != null) {
+            logger.logUserOperation("delete", String.valueOf(id), "success");
             return true;
         }
         return false;
@@ -60,4 +166,73 @@ public class UserStorage {
     public int getUserCount() {
         return users.size();
     }
+
+    // Called inside users.compute for the user's id; either side may be null
+    private void reindex(User previous, User current) {
+        if (previous != null) {
+            unindex(previous);
+            String previousEmail = normalizeEmail(previous.getEmail());
+            if (current == null || !Objects.equals(previousEmail, normalizeEmail(current.getEmail()))) {
+                releaseEmail(previous.getEmail(), previous.getId());
+            }
+        }
+        if (current != null) {
+            index(current);
+        }
+    }
+
+    private void claimEmail(User user) {
+        String key = normalizeEmail(user.getEmail());
+        if (key != null) {
+            Long owner = emailIndex.putIfAbsent(key, user.getId());
+            if (owner != null && !owner.equals(user.getId())) {
+                throw new DuplicateEmailException(user.getEmail());
+            }
+        }
+    }
+
+    private void releaseEmail(String email, Long id) {
+        String key = normalizeEmail(email);
+        if (key != null) {
+            emailIndex.remove(key, id);
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        return email != null ? email.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private void index(User user) {
+        sortIndexes.forEach((sort, index) -> index.put(new SortKey(sort.valueOf(user), user.getId()), user));
+    }
+
+    private void unindex(User user) {
+        sortIndexes.forEach((sort, index) -> index.remove(new SortKey(sort.valueOf(user), user.getId()), user));
+    }
+
+    // Opaque to clients: base64url of "<sort>:<value>:<id>"
+    private static String encodeCursor(UserSort sort, SortKey key) {
+        String position = sort.getParameter() + ":" + key.value + ":" + key.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SortKey decodeCursor(UserSort sort, String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[0].equals(sort.getParameter())) {
+            throw new IllegalArgumentException("Cursor was issued for sort=" + parts[0]);
+        }
+        try {
+            return new SortKey(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package com.webserver.timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The single pending deadline of one connection. Re-arming only updates two fields; the
+ * wheel is touched again only when the new deadline is earlier than the one already
+ * scheduled. When a scheduled check finds the deadline has moved later it reschedules
+ * itself, so a busy connection costs one wheel entry per timeout period rather than one
+ * per read or write.
+ */
+public class ConnectionDeadline {
+    private final HashedTimerWheel wheel;
+    private final Consumer<TimeoutPhase> onExpired;
+    private volatile TimeoutPhase phase;
+    // 0 when disarmed
+    private volatile long deadline;
+    private volatile long scheduledFor;
+
+    public ConnectionDeadline(HashedTimerWheel wheel, Consumer<TimeoutPhase> onExpired) {
+        this.wheel = wheel;
+        this.onExpired = onExpired;
+    }
+
+    /** Starts {@code phase}'s timeout from now, replacing whatever was armed before. */
+    public void arm(TimeoutPhase phase) {
+        long newDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(phase.getTimeoutMs());
+        if (newDeadline == 0) {
+            newDeadline = 1;
+        }
+        this.phase = phase;
+        this.deadline = newDeadline;
+
+        long scheduled = scheduledFor;
+        if (scheduled == 0 || newDeadline - scheduled < 0) {
+            schedule(newDeadline);
+        }
+    }
+
+    /** Arms {@code phase} unless it is already the armed phase, keeping its original deadline. */
+    public void enter(TimeoutPhase phase) {
+        if (this.phase != phase || deadline == 0) {
+            arm(phase);
+        }
+    }
+
+    public void disarm() {
+        deadline = 0;
+        phase = null;
+    }
+
+    public TimeoutPhase getPhase() {
+        return phase;
+    }
+
+    public boolean isExpired() {
+        long current = deadline;
+        return current != 0 && System.nanoTime() - current >= 0;
+    }
+
+    private void schedule(long at) {
+        scheduledFor = at;
+        long delayNanos = Math.max(0, at - System.nanoTime());
+        wheel.schedule(this::check, TimeUnit.NANOSECONDS.toMillis(delayNanos) + 1);
+    }
+
+    private void check() {
+        scheduledFor = 0;
+        long current = deadline;
+        if (current == 0) {
+            return;
+        }
+        if (current - System.nanoTime() > 0) {
+            schedule(current);
+            return;
+        }
+        TimeoutPhase expiredPhase = phase;
+        if (expiredPhase != null) {
+            onExpired.accept(expiredPhase);
+        }
+    }
+}
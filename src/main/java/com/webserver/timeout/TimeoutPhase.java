@@ -0,0 +1,31 @@
+package com.webserver.timeout;
+
+import com.webserver.ServerConfig;
+
+/** The stages of a connection's life that each get their own deadline. */
+public enum TimeoutPhase {
+    // From the first byte of a request until its headers are complete, however slowly they trickle in
+    HEADER("header", "server.timeout.header-ms", 10_000),
+    // From the end of the headers until the whole body has arrived
+    BODY("body", "server.timeout.body-ms", 30_000),
+    // Without write progress while the client is not draining the response
+    WRITE("write", "server.timeout.write-ms", 30_000),
+    // Between requests on a kept-alive connection, and before the first one
+    IDLE("idle", "server.keepalive.idle-timeout-ms", 5_000);
+
+    private final String label;
+    private final long timeoutMs;
+
+    TimeoutPhase(String label, String configKey, long defaultTimeoutMs) {
+        this.label = label;
+        this.timeoutMs = ServerConfig.getInstance().getLong(configKey, defaultTimeoutMs);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
@@ -0,0 +1,162 @@
+package com.webserver.utils;
+
+import com.webserver.Request;
+import com.webserver.Response;
+import com.webserver.ServerConfig;
+import com.webserver.StreamingBody;
+import com.webserver.metrics.MetricsCollector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipUtils {
+    private static final int MIN_BYTES = ServerConfig.getInstance().getInt("server.compression.min-bytes", 1024);
+    private static final int LEVEL = ServerConfig.getInstance().getInt("server.compression.level", 6);
+    private static final boolean ENABLED = ServerConfig.getInstance().getBoolean("server.compression.enabled", true);
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static int getMinBytes() {
+        return MIN_BYTES;
+    }
+
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/")
+                || type.startsWith("application/json")
+                || type.startsWith("application/javascript")
+                || type.startsWith("application/xml")
+                || type.startsWith("image/svg+xml");
+    }
+
+    /** True when the client's Accept-Encoding allows gzip (a q-value of 0 refuses it). */
+    public static boolean acceptsGzip(Request request) {
+        String acceptEncoding = request.getHeader("accept-encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return !refused;
+            }
+            if (coding.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    public static byte[] gzip(ByteBuffer content) {
+        long startTime = System.nanoTime();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.remaining() / 3));
+        try (GZIPOutputStream gzip = new LeveledGzipOutputStream(compressed, LEVEL)) {
+            Channels.newChannel(gzip).write(content.duplicate());
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory gzip failed", e);
+        }
+        MetricsCollector.getInstance().recordCompressionTime((System.nanoTime() - startTime) / 1_000_000_000.0);
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Gzips a byte[]-bodied response when it is large enough, of a compressible type and
+     * the client accepts gzip. Eligible responses get {@code Vary: Accept-Encoding} either way.
+     */
+    public static Response compressIfAccepted(Request request, Response response) {
+        if (response.getResponseBody() instanceof StreamingBody streaming) {
+            return compressStreaming(request, response, streaming);
+        }
+
+        byte[] body = response.getBody();
+        if (!ENABLED || body.length < MIN_BYTES || response.getHeader("Content-Encoding") != null
+                || !isCompressible(response.getContentType())) {
+            return response;
+        }
+
+        response.addHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(request)) {
+            return response;
+        }
+
+        byte[] compressed = gzip(ByteBuffer.wrap(body));
+        if (compressed.length >= body.length) {
+            return response;
+        }
+        response.setBinaryBody(compressed, response.getContentType());
+        response.addHeader("Content-Encoding", "gzip");
+        MetricsCollector.getInstance().recordCompressionSaved(body.length - compressed.length);
+        return response;
+    }
+
+    // Streaming bodies have no length up front, so they are compressed on the fly regardless of size
+    private static Response compressStreaming(Request request, Response response, StreamingBody streaming) {
+        if (!ENABLED || response.getHeader("Content-Encoding") != null
+                || !isCompressible(response.getContentType())) {
+            return response;
+        }
+
+        response.addHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(request)) {
+            return response;
+        }
+
+        streaming.setEncoder(out -> {
+            try {
+                return new LeveledGzipOutputStream(out, LEVEL, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        response.addHeader("Content-Encoding", "gzip");
+        return response;
+    }
+
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+        private final boolean recordSavings;
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            this(out, level, false);
+        }
+
+        LeveledGzipOutputStream(OutputStream out, int level, boolean recordSavings) throws IOException {
+            super(out, 8192);
+            this.recordSavings = recordSavings;
+            def.setLevel(level);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            super.finish();
+            if (recordSavings) {
+                long saved = def.getBytesRead() - def.getBytesWritten();
+                if (saved > 0) {
+                    MetricsCollector.getInstance().recordCompressionSaved(saved);
+                }
+            }
+        }
+    }
+}
@@ -1,25 +1,51 @@
 package com.webserver.utils;
 
+import com.webserver.logging.StructuredLogger;
+import com.webserver.metrics.RequestTiming;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 
 public class JsonUtils {
+    private static final StructuredLogger logger = new StructuredLogger(JsonUtils.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectWriter streamingWriter;
+    private static final ObjectWriter compactWriter;
 
     static {
         objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        streamingWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        compactWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
     }
 
     public static String toJson(Object obj) {
+        long startTime = RequestTiming.isEnabled() ? System.nanoTime() : 0;
         try {
             return objectMapper.writeValueAsString(obj);
         } catch (JsonProcessingException e) {
-            System.err.println("❌ JSON serialization error: " + e.getMessage());
+            logger.error("JSON serialization error: {}", e.getMessage());
             return createErrorJson("Serialization error", e.getMessage());
+        } finally {
+            if (startTime != 0) {
+                RequestTiming.recordSerialization(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /** Serializes without indentation, e.g. for one JSONL record per line. */
+    public static String toCompactJson(Object obj) {
+        try {
+            return compactWriter.writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("JSON serialization error", e);
         }
     }
 
@@ -27,7 +53,7 @@ public class JsonUtils {
         try {
             return objectMapper.readValue(json, clazz);
         } catch (JsonProcessingException e) {
-            System.err.println("❌ JSON parsing error: " + e.getMessage());
+            logger.debug("JSON parsing error: {}", e.getMessage());
             throw new RuntimeException("Invalid JSON format", e);
         }
     }
@@ -41,6 +67,40 @@ public class JsonUtils {
         return toJson(response);
     }
 
+    /** Like {@link #createSuccessJson} with a {@code next} cursor, null on the last page. */
+    public static String createPageJson(String message, List<?> data, String next) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", message);
+        response.put("data", data);
+        response.put("next", next);
+        response.put("timestamp", System.currentTimeMillis());
+        return toJson(response);
+    }
+
+    /**
+     * Streams the same document as {@link #createSuccessJson} for a list, serializing one
+     * element at a time so memory use does not depend on the number of elements.
+     */
+    public static void writeSuccessJson(OutputStream out, String message, Iterable<?> data) throws IOException {
+        // The caller owns the stream: it must not be closed here, and per-element flushes
+        // would turn every user into its own tiny chunk
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("data");
+        for (Object item : data) {
+            streamingWriter.writeValue(generator, item);
+        }
+        generator.writeEndArray();
+        generator.writeBooleanField("success", true);
+        generator.writeStringField("message", message);
+        generator.writeNumberField("timestamp", System.currentTimeMillis());
+        generator.writeEndObject();
+        generator.close();
+    }
+
     public static String createErrorJson(String error, String details) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
@@ -0,0 +1,89 @@
+package com.webserver.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Each slot carries a
+ * sequence number: producers claim a slot with one CAS on the tail and publish it by
+ * advancing the slot's sequence, so a full buffer is detected without locking and
+ * {@link #offer} never blocks. Only one thread may call {@link #poll} or {@link #drain}.
+ */
+public class MpscRingBuffer<E> {
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0);
+    // Consumer thread only
+    private long head = 0;
+
+    public MpscRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.items = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Adds the element, or returns false immediately when the buffer is full. */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            }
+            // Another producer claimed this position first; retry with the new tail
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) items[index];
+        items[index] = null;
+        sequences.set(index, head + items.length);
+        head++;
+        return element;
+    }
+
+    /** Hands up to {@code limit} elements to {@code consumer} and returns how many there were. */
+    public int drain(Consumer<E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /** Approximate when called from a thread other than the consumer. */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /** Number of elements ever added, including ones still being published. */
+    public long producedCount() {
+        return tail.get();
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+}
@@ -0,0 +1,95 @@
+package com.webserver.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Drains an {@link MpscRingBuffer} in batches on a dedicated daemon thread. The thread
+ * parks while the buffer is empty and a producer unparks it only when it is actually
+ * parked, so an idle writer never wakes up and a busy one is never disturbed.
+ * {@link #flush} hands off to the thread and waits for it instead of guessing how long
+ * it needs.
+ */
+public class RingBufferWriter<E> {
+    private final MpscRingBuffer<E> buffer;
+    private final Consumer<E> consumer;
+    private final Runnable onIdle;
+    private final int batchSize;
+    private final Thread thread;
+    // Set before the writer rechecks the buffer and parks, and read by producers after
+    // they publish, so either the writer sees the element or the producer sees it parked
+    private volatile boolean parked;
+    // Elements consumed when onIdle last finished, and the thread waiting for that to grow
+    private volatile long flushedCount;
+    private volatile Thread flusher;
+    // Writer thread only
+    private long consumedCount;
+
+    /**
+     * Starts the writer. {@code consumer} must not throw; {@code onIdle} runs whenever the
+     * buffer has been emptied, e.g. to flush an output stream.
+     */
+    public RingBufferWriter(String name, int capacity, int batchSize, Consumer<E> consumer, Runnable onIdle) {
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.consumer = consumer;
+        this.onIdle = onIdle;
+        this.batchSize = batchSize;
+        this.thread = new Thread(this::drainLoop, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Queues the element, or returns false immediately when the buffer is full. */
+    public boolean offer(E element) {
+        if (!buffer.offer(element)) {
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until everything offered before the call has been consumed and {@code onIdle}
+     * has run after it. Returns false if that did not happen within the timeout.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = buffer.producedCount();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        flusher = Thread.currentThread();
+        try {
+            LockSupport.unpark(thread);
+            long remaining;
+            while (flushedCount < target && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            return flushedCount >= target;
+        } finally {
+            flusher = null;
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            int drained = buffer.drain(consumer, batchSize);
+            if (drained > 0) {
+                consumedCount += drained;
+                continue;
+            }
+            onIdle.run();
+            flushedCount = consumedCount;
+            Thread waiting = flusher;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+
+            parked = true;
+            if (buffer.size() == 0) {
+                LockSupport.park(this);
+            }
+            parked = false;
+        }
+    }
+}
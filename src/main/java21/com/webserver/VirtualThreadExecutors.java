@@ -0,0 +1,13 @@
+package com.webserver;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public final class VirtualThreadExecutors {
+    private VirtualThreadExecutors() {
+    }
+
+    public static ExecutorService newExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("virtual-worker-", 0).factory());
+    }
+}